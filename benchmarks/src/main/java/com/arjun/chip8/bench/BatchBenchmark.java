@@ -0,0 +1,72 @@
+package com.arjun.chip8.bench;
+
+import com.arjun.chip8.CPU;
+import com.arjun.chip8.MachineBatch;
+import com.arjun.chip8.MemoryInput;
+import com.arjun.chip8.RomImage;
+import com.arjun.chip8.RomLibrary;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// One frame of many copies of a ROM, run in lockstep by MachineBatch or one CPU at a time
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"test_opcode.ch8", "INVADERS", "PONG2"})
+    public String rom;
+
+    @Param({"64", "1024"})
+    public int lanes;
+
+    @Param({"false", "true"})
+    public boolean keys; // Each lane holds a different key, which sends lanes down different paths
+
+    private static final int INSTRUCTIONS_PER_FRAME = 10;
+
+    private MachineBatch batch;
+    private CPU[] cpus;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        RomImage image = RomLibrary.shared().load(this.rom);
+        this.batch = new MachineBatch(image, this.lanes);
+        this.cpus = new CPU[this.lanes];
+        for(int lane = 0; lane < this.lanes; lane++)
+        {
+            this.batch.setSeed(lane, lane);
+            this.cpus[lane] = CPU.headless(image.length());
+            this.cpus[lane].loadProgram(image);
+            this.cpus[lane].setSeed(lane);
+            if(this.keys)
+            {
+                this.batch.setKeys(lane, 1 << (lane & 0xF));
+                ((MemoryInput) this.cpus[lane].getInput()).pressKey(lane & 0xF);
+            }
+        }
+    }
+
+    @Benchmark
+    public void batch()
+    {
+        this.batch.runFrame(INSTRUCTIONS_PER_FRAME);
+    }
+
+    @Benchmark
+    public void separate()
+    {
+        for(CPU cpu : this.cpus)
+        {
+            cpu.startFrame();
+            cpu.run(INSTRUCTIONS_PER_FRAME);
+            cpu.tickTimers();
+        }
+    }
+}
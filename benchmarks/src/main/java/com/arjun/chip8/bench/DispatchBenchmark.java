@@ -0,0 +1,48 @@
+package com.arjun.chip8.bench;
+
+import com.arjun.chip8.CPU;
+import com.arjun.chip8.ExecutionEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Raw instruction dispatch on a synthetic loop of register instructions
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    private static final int INSTRUCTIONS = 1000;
+
+    @Param({"interpreter", "block", "jit"})
+    public String engine;
+
+    private CPU cpu;
+
+    @Setup
+    public void setup()
+    {
+        this.cpu = Programs.headless(Programs.syntheticOpcodes(255, 42));
+        this.cpu.setEngine(ExecutionEngine.named(this.engine));
+    }
+
+    // fetchOpcode and decodeAndExecute called directly, the path every engine falls back to
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public void fetchDecodeExecute()
+    {
+        for(int i = 0; i < INSTRUCTIONS; i++)
+        {
+            this.cpu.decodeAndExecute(this.cpu.fetchOpcode());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int engineRun()
+    {
+        return this.cpu.run(INSTRUCTIONS);
+    }
+}
@@ -0,0 +1,58 @@
+package com.arjun.chip8.bench;
+
+import com.arjun.chip8.CPU;
+import com.arjun.chip8.Display;
+import com.arjun.chip8.Variant;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Sprite drawing, both straight into Display and through Dxyn. SUPER-CHIP and XO-CHIP run in lo-res mode, so Dxyn doubles every pixel
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawBenchmark {
+    private static final int SPRITES = 256;
+
+    @Param({"chip8", "schip", "xochip"})
+    public String variant;
+
+    private Display display;
+    private CPU cpu;
+    private int position;
+
+    @Setup
+    public void setup()
+    {
+        this.display = Variant.named(this.variant).newDisplay();
+        // A20C points I at the sprite, D01F draws its 15 rows, 7003 and 7105 move it, 1202 loops back to the draw
+        byte[] program = {(byte) 0xA2, 0x0C, (byte) 0xD0, 0x1F, 0x70, 0x03, 0x71, 0x05, 0x12, 0x02, 0x00, 0x00,
+                (byte) 0xFF, (byte) 0x81, (byte) 0xBD, (byte) 0xA5, (byte) 0xA5, (byte) 0xBD, (byte) 0x81, (byte) 0xFF,
+                0x3C, 0x42, (byte) 0x99, (byte) 0xA5, (byte) 0x99, 0x42, 0x3C};
+        this.cpu = Programs.headless(program, Variant.named(this.variant));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPRITES)
+    public boolean drawSpriteRows()
+    {
+        boolean collision = false;
+        for(int i = 0; i < SPRITES; i++)
+        {
+            int p = this.position++;
+            collision |= this.display.drawSpriteRow(p * 7, p * 13, p & 0xFF, 8); // Moves around so rows straddle and wrap
+        }
+        return collision;
+    }
+
+    // Each sprite is 4 instructions, one of them a 15 row Dxyn
+    @Benchmark
+    @OperationsPerInvocation(SPRITES)
+    public int dxyn()
+    {
+        return this.cpu.run(SPRITES * 4);
+    }
+}
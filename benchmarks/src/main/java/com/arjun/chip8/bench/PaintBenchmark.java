@@ -0,0 +1,59 @@
+package com.arjun.chip8.bench;
+
+import com.arjun.chip8.Display;
+import com.arjun.chip8.Window;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Window rendering offscreen, run with -Djava.awt.headless=true on machines without a display
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int dirtyRows; // Rows changed between frames
+
+    private Display display;
+    private Window window;
+    private BufferedImage target;
+    private Graphics2D graphics;
+    private Random random;
+
+    @Setup
+    public void setup()
+    {
+        this.display = new Display();
+        this.window = new Window(this.display);
+        this.window.setSize(640, 320);
+        this.target = new BufferedImage(640, 320, BufferedImage.TYPE_INT_RGB);
+        this.graphics = this.target.createGraphics();
+        this.random = new Random(42);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.graphics.dispose();
+    }
+
+    // One frame: changes some rows, hands them to the window and paints it
+    @Benchmark
+    public BufferedImage frame()
+    {
+        for(int i = 0; i < this.dirtyRows; i++)
+        {
+            this.display.drawSpriteRow(i, this.random.nextInt(64), this.random.nextInt(256), 8);
+        }
+        this.window.refresh(this.display, this.display.takeDirtyRows());
+        this.window.paint(this.graphics);
+        return this.target;
+    }
+}
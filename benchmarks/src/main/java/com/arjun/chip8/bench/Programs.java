@@ -0,0 +1,72 @@
+package com.arjun.chip8.bench;
+
+import com.arjun.chip8.CPU;
+import com.arjun.chip8.RomImage;
+import com.arjun.chip8.RomLibrary;
+import com.arjun.chip8.Variant;
+
+import java.io.IOException;
+import java.util.Random;
+
+// Builds the CPUs the benchmarks run
+final class Programs {
+
+    private Programs()
+    {
+    }
+
+    // Loads a ROM bundled with the emulator into a headless CPU
+    static CPU headless(String romName) throws IOException
+    {
+        RomImage rom = RomLibrary.shared().load(romName);
+        CPU cpu = CPU.headless(rom.length());
+        cpu.loadProgram(rom);
+        return cpu;
+    }
+
+    static CPU headless(byte[] program)
+    {
+        return headless(program, Variant.CHIP8);
+    }
+
+    static CPU headless(byte[] program, Variant variant)
+    {
+        CPU cpu = CPU.headless(program.length, variant);
+        cpu.loadProgram(program);
+        return cpu;
+    }
+
+    // A loop of random register, I and timer instructions ending with a jump back to the start
+    static byte[] syntheticOpcodes(int count, long seed)
+    {
+        int[] bases = {0x6000, 0x7000, 0x8000, 0x8001, 0x8002, 0x8003, 0x8004, 0x8005, 0x8006, 0x8007, 0x800E, 0xA000, 0xF01E, 0xF007};
+        Random random = new Random(seed);
+        byte[] program = new byte[count * 2 + 2];
+        for(int i = 0; i < count; i++)
+        {
+            int base = bases[random.nextInt(bases.length)];
+            int opcode;
+            if(base == 0xA000)
+            {
+                opcode = base | random.nextInt(0x1000);
+            }
+            else if((base & 0xF000) == 0x8000)
+            {
+                opcode = base | random.nextInt(16) << 8 | random.nextInt(16) << 4;
+            }
+            else if((base & 0xF000) == 0xF000)
+            {
+                opcode = base | random.nextInt(16) << 8;
+            }
+            else
+            {
+                opcode = base | random.nextInt(16) << 8 | random.nextInt(256);
+            }
+            program[i * 2] = (byte) (opcode >>> 8);
+            program[i * 2 + 1] = (byte) opcode;
+        }
+        program[count * 2] = 0x12; // 1200, jumps back to the start
+        program[count * 2 + 1] = 0x00;
+        return program;
+    }
+}
@@ -0,0 +1,54 @@
+package com.arjun.chip8.bench;
+
+import com.arjun.chip8.CPU;
+import com.arjun.chip8.ExecutionEngine;
+import com.arjun.chip8.Scheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Whole ROMs run headless, one frame per invocation, reporting instructions per second
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RomBenchmark {
+
+    @Param({"tetris.ch8", "INVADERS", "PONG2", "test_opcode.ch8"})
+    public String rom;
+
+    @Param({"interpreter", "block", "jit"})
+    public String engine;
+
+    @Param({"1000"})
+    public int instructionsPerFrame;
+
+    private Scheduler scheduler;
+    private CPU cpu;
+
+    // Reported next to the frame rate, since a frame stops early while a ROM waits for a key
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long instructions;
+    }
+
+    @Setup
+    public void setup() throws IOException
+    {
+        this.cpu = Programs.headless(this.rom);
+        this.cpu.setEngine(ExecutionEngine.named(this.engine));
+        this.scheduler = new Scheduler(this.cpu, this.instructionsPerFrame, false);
+    }
+
+    @Benchmark
+    public void frame(Counters counters)
+    {
+        long before = this.cpu.getCycles();
+        this.scheduler.runFrame();
+        counters.instructions += this.cpu.getCycles() - before;
+    }
+}
@@ -0,0 +1,154 @@
+package com.arjun.chip8;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+// Turns the sound timer into samples on the emulation thread and plays them on a thread of its own.
+// At the end of every frame one frame of samples is generated into a reused buffer and handed over through a
+// SampleRing, so the emulation thread never allocates, locks or waits on the sound device. A frame that does not
+// fit is dropped, which keeps the delay between the timer and the speaker under the length of the ring.
+public class Audio implements FrameListener, AutoCloseable {
+    public static final int SAMPLE_RATE = 48000;
+    public static final int SAMPLES_PER_FRAME = SAMPLE_RATE / Scheduler.FRAME_RATE;
+
+    private static final int RING_SIZE = 4096; // A little over 5 frames, about 85 ms
+    private static final byte AMPLITUDE = 32;
+    private static final double PATTERN_RATE = 4000; // XO-CHIP pattern bits per second at pitch 64
+    private static final byte[] BUZZER = new byte[16]; // Played when a ROM has not loaded an XO-CHIP pattern, a 500 Hz square wave at pitch 64
+    private static final long IDLE_NANOS = 10_000_000L; // Longest the audio thread sleeps when the ring is empty, so close is noticed
+
+    static
+    {
+        Arrays.fill(BUZZER, (byte) 0xF0);
+    }
+
+    private final AudioSink sink;
+    private final SampleRing ring;
+    private final Thread thread;
+
+    private final byte[] frame; // Samples of one frame, only used by the emulation thread
+    private final byte[] pattern; // The 128 bit pattern being played
+    private double phase; // Bit of the pattern the next sample comes from
+    private int pitch;
+    private double step; // Pattern bits per sample at that pitch
+    private volatile long droppedFrames; // Only written by the emulation thread
+
+    private final byte[] chunk; // Samples taken from the ring, only used by the audio thread
+    private volatile boolean running;
+
+    public Audio(AudioSink sink)
+    {
+        this.sink = sink;
+        this.ring = new SampleRing(RING_SIZE);
+        this.frame = new byte[SAMPLES_PER_FRAME];
+        this.pattern = new byte[16];
+        this.pitch = -1;
+        this.chunk = new byte[SAMPLES_PER_FRAME];
+        this.thread = new Thread(this::play, "audio");
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.MAX_PRIORITY); // Missing the device's deadline is audible, missing a frame is not
+    }
+
+    public void start()
+    {
+        this.running = true;
+        this.thread.start();
+    }
+
+    // Frames of sound thrown away because the audio thread had fallen behind
+    public long getDroppedFrames()
+    {
+        return this.droppedFrames;
+    }
+
+    // Called on the emulation thread after the timers have ticked
+    @Override
+    public void frameEnded(CPU cpu, long frame)
+    {
+        if(cpu.isBuzzing())
+        {
+            this.generate(cpu);
+        }
+        else
+        {
+            Arrays.fill(this.frame, (byte) 0); // Silence still has to be played so the next sound starts on time
+        }
+        if(this.ring.offer(this.frame, 0, this.frame.length))
+        {
+            LockSupport.unpark(this.thread);
+        }
+        else
+        {
+            this.droppedFrames++;
+        }
+    }
+
+    // Fills the frame by stepping through the pattern, keeping the phase from the previous frame so the wave has no seams
+    private void generate(CPU cpu)
+    {
+        if(!cpu.readAudioPattern(this.pattern))
+        {
+            System.arraycopy(BUZZER, 0, this.pattern, 0, BUZZER.length);
+        }
+        if(cpu.getPitch() != this.pitch)
+        {
+            this.pitch = cpu.getPitch();
+            this.step = PATTERN_RATE * Math.pow(2, (this.pitch - 64) / 48.0) / SAMPLE_RATE;
+        }
+        double phase = this.phase;
+        for(int i = 0; i < this.frame.length; i++)
+        {
+            int bit = (int) phase;
+            this.frame[i] = (this.pattern[bit >>> 3] << (bit & 7) & 0x80) != 0 ? AMPLITUDE : -AMPLITUDE;
+            phase += this.step;
+            if(phase >= 128)
+            {
+                phase -= 128;
+            }
+        }
+        this.phase = phase;
+    }
+
+    // Runs on the audio thread, moving samples from the ring to the sink until closed
+    private void play()
+    {
+        while(this.running || this.ring.size() > 0)
+        {
+            int count = this.ring.poll(this.chunk, 0, this.chunk.length);
+            if(count == 0)
+            {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+                continue;
+            }
+            try
+            {
+                this.sink.write(this.chunk, 0, count);
+            }
+            catch(IOException e)
+            {
+                LoggerFactory.getLogger(Audio.class).error("Audio output failed, continuing without sound", e); // Looked up here so slf4j is not started on the way to the first frame
+                return;
+            }
+        }
+    }
+
+    // Plays what is left in the ring and closes the sink
+    @Override
+    public void close() throws IOException
+    {
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        try
+        {
+            this.thread.join();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        this.sink.close();
+    }
+}
@@ -0,0 +1,39 @@
+package com.arjun.chip8;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Plays or stores the samples the audio thread takes from the ring, 8 bit signed mono at Audio.SAMPLE_RATE
+public interface AudioSink extends AutoCloseable {
+    void write(byte[] samples, int offset, int length) throws IOException; // May block, it only ever runs on the audio thread
+
+    @Override
+    default void close() throws IOException
+    {
+    }
+
+    // Creates a sink from its name, used by the command line options: line, none or a .wav file to write
+    static AudioSink named(String name) throws IOException
+    {
+        switch(name)
+        {
+            case "line": return new LineAudio();
+            case "none": return new NullAudio();
+            default:
+                if(name.endsWith(".wav"))
+                {
+                    return new WavAudio(Path.of(name));
+                }
+                throw new IllegalArgumentException("Unknown audio sink: " + name);
+        }
+    }
+
+    // Throws the exception named would for a bad name, without opening a device or a file
+    static void checkName(String name)
+    {
+        if(!name.equals("line") && !name.equals("none") && !name.endsWith(".wav"))
+        {
+            throw new IllegalArgumentException("Unknown audio sink: " + name);
+        }
+    }
+}
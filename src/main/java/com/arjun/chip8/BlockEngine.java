@@ -0,0 +1,285 @@
+package com.arjun.chip8;
+
+import java.util.Arrays;
+
+// Decodes straight-line runs of instructions once and replays them from a cache keyed by start address.
+// Loops made only of pure blocks that come back to the same registers are waiting on the delay timer,
+// which only changes between frames, so the rest of the frame's budget is skipped in whole loop iterations.
+public class BlockEngine implements ExecutionEngine {
+    static final int MAX_BLOCK_LENGTH = 64;
+    static final int MAX_LOOP_LENGTH = 64; // Longest loop, in instructions, that is checked for being idle
+    private static final ExecutionEngine TRACED = new Interpreter(); // Runs traced CPUs, the interpreter keeps no state so every CPU can share it
+
+    // A run of decoded instructions, ending at the first one that can jump, skip, wait or write memory
+    static final class Block {
+        final int start;
+        final int end; // Address after the last instruction
+        final int[] ops; // Operation id in the high 16 bits and opcode in the low 16 bits
+        final boolean pure; // Only reads and writes registers, I and the program counter
+        int runs; // Times the whole block has run, used by JitEngine to find hot blocks
+        CompiledBlock compiled; // Set by JitEngine once the block is compiled
+
+        Block(int start, int[] ops, boolean pure)
+        {
+            this.start = start;
+            this.end = start + ops.length * 2;
+            this.ops = ops;
+            this.pure = pure;
+        }
+    }
+
+    private Block[] blocks; // Indexed by start address
+    private long[] code; // Bit per address covered by a cached block, so most writes are cleared without a scan
+    private final int[] scratch = new int[MAX_BLOCK_LENGTH];
+
+    private int loopStart = -1; // Address of the first pure block since the last impure one
+    private int loopLength; // Instructions run since loopStart
+    private final int[] loopRegisters = new int[16]; // Registers when loopStart was entered
+    private int loopI;
+
+    @Override
+    public int run(CPU cpu, int budget)
+    {
+        if(Tracer.ENABLED)
+        {
+            return TRACED.run(cpu, budget); // Traces need the per instruction path
+        }
+        byte[] memory = cpu.getMemory();
+        this.allocate(memory);
+        int executed = 0;
+        while(executed < budget)
+        {
+            int pc = cpu.getPc();
+            Block block = pc < this.blocks.length ? this.blocks[pc] : null;
+            if(block == null)
+            {
+                block = this.translate(cpu, memory, pc);
+                if(block == null)
+                {
+                    cpu.step(); // Nothing to translate here, let the interpreter fail the same way it would on its own
+                    executed++;
+                    continue;
+                }
+            }
+            if(block.pure && this.loopStart == pc && this.isLoopStateUnchanged(cpu))
+            {
+                int loops = (budget - executed) / this.loopLength; // Every further iteration would end exactly here again
+                executed += loops * this.loopLength;
+                cpu.addCycles(loops * this.loopLength);
+                this.loopStart = -1;
+                if(executed == budget)
+                {
+                    break;
+                }
+            }
+            this.trackLoop(cpu, block);
+            int count = Math.min(block.ops.length, budget - executed); // Only the last instruction can change flow, so a cut block is still exact
+            cpu.setPc(pc + 2 * count); // Only the last instruction reads the program counter, and it sees the same value as after a fetch
+            this.runBlock(cpu, block, count);
+            executed += count;
+            cpu.addCycles(count);
+            if(cpu.isWaitingForKey() || cpu.hasExited())
+            {
+                break;
+            }
+        }
+        this.loopStart = -1; // Timers and keys may change before the next call
+        return executed;
+    }
+
+    // Translates a block at the start of every basic block RomAnalyzer finds, so the first run of each does not pay for it.
+    // Blocks the ROM writes over are left to be found at run time, since they would be dropped again
+    @Override
+    public void preload(CPU cpu, RomImage rom)
+    {
+        RomAnalysis analysis = RomAnalyzer.analyze(rom, cpu.getVariant());
+        byte[] memory = cpu.getMemory();
+        this.allocate(memory);
+        for(RomAnalysis.BasicBlock block : analysis.getBlocks().values())
+        {
+            if(this.blocks[block.getStart()] == null && !analysis.isWritten(block))
+            {
+                this.translate(cpu, memory, block.getStart());
+            }
+        }
+    }
+
+    private void allocate(byte[] memory)
+    {
+        if(this.blocks == null)
+        {
+            this.blocks = new Block[memory.length];
+            this.code = new long[(memory.length + 63) / 64];
+        }
+    }
+
+    // Runs the first count instructions of the block, the program counter is already set to where they end
+    void runBlock(CPU cpu, Block block, int count)
+    {
+        int[] ops = block.ops;
+        for(int i = 0; i < count; i++)
+        {
+            cpu.execute(ops[i] >>> 16, ops[i] & 0xFFFF);
+        }
+    }
+
+    // Starts watching for an idle loop at a pure block, or stops when an impure block runs
+    private void trackLoop(CPU cpu, Block block)
+    {
+        if(!block.pure)
+        {
+            this.loopStart = -1;
+            return;
+        }
+        if(this.loopStart < 0 || this.loopStart == block.start || this.loopLength > MAX_LOOP_LENGTH)
+        {
+            this.loopStart = block.start; // Watches from here, saving the state to compare against on the way back
+            this.loopLength = 0;
+            System.arraycopy(cpu.getRegisters(), 0, this.loopRegisters, 0, 16);
+            this.loopI = cpu.getI();
+        }
+        this.loopLength += block.ops.length;
+    }
+
+    private boolean isLoopStateUnchanged(CPU cpu)
+    {
+        return this.loopLength > 0 && this.loopI == cpu.getI() && Arrays.equals(this.loopRegisters, cpu.getRegisters());
+    }
+
+    @Override
+    public void memoryWritten(int address, int length)
+    {
+        if(this.code == null)
+        {
+            return;
+        }
+        int end = Math.min(address + length, this.blocks.length);
+        for(int a = address; a < end; a++)
+        {
+            if((this.code[a >>> 6] & (1L << a)) != 0)
+            {
+                this.invalidate(address, end);
+                return;
+            }
+        }
+    }
+
+    // Drops every block overlapping the written range and rebuilds the coverage bits from the rest
+    private void invalidate(int start, int end)
+    {
+        Arrays.fill(this.code, 0L);
+        for(int i = 0; i < this.blocks.length; i++)
+        {
+            Block block = this.blocks[i];
+            if(block == null)
+            {
+                continue;
+            }
+            if(block.start < end && start < block.end)
+            {
+                this.blocks[i] = null;
+            }
+            else
+            {
+                this.cover(block);
+            }
+        }
+    }
+
+    private Block translate(CPU cpu, byte[] memory, int pc)
+    {
+        int length = 0;
+        boolean pure = true;
+        for(int address = pc; address + 1 < memory.length && length < MAX_BLOCK_LENGTH; address += 2)
+        {
+            int opcode = ((memory[address] & 0xFF) << 8) | (memory[address + 1] & 0xFF);
+            int op = cpu.decode(opcode); // Decodes with the CPU's variant
+            this.scratch[length++] = (op << 16) | opcode;
+            pure &= isPure(op);
+            if(endsBlock(op))
+            {
+                break;
+            }
+        }
+        if(length == 0)
+        {
+            return null;
+        }
+        Block block = new Block(pc, Arrays.copyOf(this.scratch, length), pure);
+        this.blocks[pc] = block;
+        this.cover(block);
+        return block;
+    }
+
+    private void cover(Block block)
+    {
+        for(int a = block.start; a < block.end; a++)
+        {
+            this.code[a >>> 6] |= 1L << a;
+        }
+    }
+
+    // Instructions after which the next address to run is not simply the following one
+    static boolean endsBlock(int op)
+    {
+        switch(op)
+        {
+            case Decoder.RET:
+            case Decoder.JP:
+            case Decoder.CALL:
+            case Decoder.SE_VX_NN:
+            case Decoder.SNE_VX_NN:
+            case Decoder.SE_VX_VY:
+            case Decoder.SNE_VX_VY:
+            case Decoder.JP_V0:
+            case Decoder.SKP:
+            case Decoder.SKNP:
+            case Decoder.LD_VX_K: // Can run again while waiting for a key
+            case Decoder.LD_B_VX: // Writes memory, which may be code
+            case Decoder.LD_I_VX:
+            case Decoder.SAVE_RANGE:
+            case Decoder.LD_I_LONG: // Its address is the next word, not an instruction
+            case Decoder.EXIT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Instructions whose result depends only on registers, I, memory and the delay timer, and that only change registers, I and the program counter
+    static boolean isPure(int op)
+    {
+        switch(op)
+        {
+            case Decoder.NOP:
+            case Decoder.JP:
+            case Decoder.SE_VX_NN:
+            case Decoder.SNE_VX_NN:
+            case Decoder.SE_VX_VY:
+            case Decoder.LD_VX_NN:
+            case Decoder.ADD_VX_NN:
+            case Decoder.LD_VX_VY:
+            case Decoder.OR:
+            case Decoder.AND:
+            case Decoder.XOR:
+            case Decoder.ADD_VX_VY:
+            case Decoder.SUB:
+            case Decoder.SHR:
+            case Decoder.SUBN:
+            case Decoder.SHL:
+            case Decoder.SNE_VX_VY:
+            case Decoder.LD_I:
+            case Decoder.JP_V0:
+            case Decoder.LD_VX_DT:
+            case Decoder.ADD_I_VX:
+            case Decoder.LD_F_VX:
+            case Decoder.LD_VX_I:
+            case Decoder.LD_HF_VX:
+            case Decoder.LOAD_RANGE:
+            case Decoder.LD_I_LONG:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
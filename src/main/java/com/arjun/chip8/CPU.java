@@ -1,60 +1,432 @@
 package com.arjun.chip8;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.util.Random;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
 
 public class CPU {
+    // The register file, I, pc and the timers are package private so code generated by JitEngine can use them directly
     private final byte[] memory; // RAM of chip 8
-    private final int[] registers; // Chip 8 registers
+    final int[] registers; // Chip 8 registers
     private final int[] stack; // Chip 8 stack
-    private int I; // Register I
-    private int pc; // Program counter
+    int I; // Register I
+    int pc; // Program counter
     private int sp; // Stack pointer
 
     private final Display display; // Display
 
-    private final Window window; // Window for graphics
+    private final VideoSink video; // Where display changes are sent
+
+    private final InputSource input; // Where key states are read from
 
-    private final int[] keyboardRegisters;
+    int delayTimer;
 
-    private int delayTimer;
+    int soundTimer;
 
-    private int soundTimer;
+    private long cycles; // Number of instructions executed
+
+    private boolean waitingForKey; // Set while Fx0A is waiting for a key to be pressed
 
     private final int length;
 
-    private final Logger LOG = LoggerFactory.getLogger(CPU.class);
+    private final long[] dirtyPages; // Bit per memory page written since the last snapshot or restore
+    private Snapshot base; // Snapshot the clean pages of memory are identical to
+
+    private MemorySegment residentSlab; // MachineStore slot the clean pages of memory are identical to
+    private long residentOffset;
+
+    private long randomState; // Xorshift state for Cxnn, set with setSeed so runs can be repeated
+
+    private final Tracer tracer; // Only created when tracing is enabled
+
+    private final Metrics metrics; // Only created when metrics are enabled
+
+    private ExecutionEngine engine; // Runs instructions for run()
+
+    private final Variant variant;
+    private final byte[] decodeTable; // Operation id of every opcode for this variant
+    private boolean hires; // SUPER-CHIP 128x64 mode, lo-res pixels are drawn 2x2 on the same display
+    private int planeMask; // XO-CHIP planes that drawing, clearing and scrolling affect
+    private final int[] flags; // SUPER-CHIP RPL user flags
+    private final byte[] audioPattern; // XO-CHIP 1 bit audio samples, loaded by F002
+    private boolean audioPatternLoaded;
+    private int pitch; // XO-CHIP playback rate of the audio pattern, 64 is 4000 samples per second
+    private boolean exited; // Set by 00FD
+    private boolean buzzing; // The sound timer was running during the last frame
 
     public CPU(int length){
-        this.memory = new byte[4096]; // RAM size is 4096 bytes
+        this(length, Variant.CHIP8);
+    }
+
+    public CPU(int length, Variant variant){
+        this(length, variant, variant.newDisplay(), new Keyboard()); //Creates a new display and keyboard object
+    }
+
+    private CPU(int length, Variant variant, Display display, Keyboard keyboard){
+        this(length, variant, display, new Window(display, keyboard), keyboard); // Creates a new window object
+    }
+
+    public CPU(int length, Display display, VideoSink video, InputSource input){
+        this(length, Variant.CHIP8, display, video, input);
+    }
+
+    public CPU(int length, Variant variant, Display display, VideoSink video, InputSource input){
+        if(display.getRows() != variant.displayRows || display.getCols() != variant.displayCols || display.getPlanes() != variant.planes)
+        {
+            throw new IllegalArgumentException(variant + " needs a display made by Variant.newDisplay");
+        }
+        this.variant = variant;
+        this.decodeTable = Decoder.table(variant);
+        this.flags = new int[16];
+        this.audioPattern = new byte[16];
+        this.planeMask = 1;
+        this.pitch = 64;
+        this.memory = new byte[variant.memorySize]; // 4096 bytes, 64K on XO-CHIP
         this.registers = new int[16]; // 16 registers
         this.stack = new int[16]; // stack
-        this.display = new Display(); //Creates a new display object
-        Keyboard keyboard = new Keyboard(); //Creates a new keyboard object
-        this.window = new Window(this.display, keyboard); // Creates a new window object
+        this.display = display;
+        this.video = video;
+        this.input = input;
         this.length = length;
-        this.keyboardRegisters = keyboard.getKeyboard(); // Gets current keyboard registers
+        this.dirtyPages = new long[(this.memory.length / Snapshot.PAGE_SIZE + 63) / 64];
+        this.setSeed(System.nanoTime());
+        this.engine = new Interpreter();
+        this.tracer = Tracer.ENABLED ? new Tracer(Integer.getInteger("chip8.trace.size", 1 << 16), variant) : null;
+        this.metrics = Metrics.ENABLED ? MetricsRegistry.get().register() : null;
         this.I = 0;
         this.sp = 0;
         this.pc = 0x200; // Program counter starts at 0x200
     }
 
+    // Creates a CPU that runs without a window, keys are set through the returned CPU's input
+    public static CPU headless(int length){
+        return headless(length, Variant.CHIP8);
+    }
+
+    public static CPU headless(int length, Variant variant){
+        return new CPU(length, variant, variant.newDisplay(), new NullVideo(), new MemoryInput());
+    }
+
+    public Display getDisplay(){
+        return this.display;
+    }
+
+    public InputSource getInput(){
+        return this.input;
+    }
+
+    public long getCycles(){
+        return this.cycles;
+    }
+
+    public boolean isWaitingForKey(){
+        return this.waitingForKey;
+    }
+
+    public boolean hasExited(){
+        return this.exited;
+    }
+
+    public Variant getVariant(){
+        return this.variant;
+    }
+
+    public boolean isHires(){
+        return this.hires;
+    }
+
+    public int getSoundTimer(){
+        return this.soundTimer;
+    }
+
+    public int getPitch(){
+        return this.pitch;
+    }
+
+    // The XO-CHIP audio pattern, or null until a ROM loads one
+    public byte[] getAudioPattern(){
+        return this.audioPatternLoaded ? this.audioPattern.clone() : null;
+    }
+
+    // Copies the XO-CHIP audio pattern into target without allocating, returns false if the ROM never loaded one
+    boolean readAudioPattern(byte[] target){
+        System.arraycopy(this.audioPattern, 0, target, 0, this.audioPattern.length);
+        return this.audioPatternLoaded;
+    }
+
+    // Whether sound should be playing for the frame that just ended
+    public boolean isBuzzing(){
+        return this.buzzing;
+    }
+
+    // Waiting for a key with both timers stopped, so nothing changes until a key is pressed
+    public boolean isIdle(){
+        return this.waitingForKey && this.delayTimer == 0 && this.soundTimer == 0;
+    }
+
+    public Tracer getTracer(){
+        return this.tracer;
+    }
+
+    public Metrics getMetrics(){
+        return this.metrics;
+    }
+
+    public void setEngine(ExecutionEngine engine){
+        this.engine = engine;
+    }
+
+    public ExecutionEngine getEngine(){
+        return this.engine;
+    }
+
+    // Accessors for execution engines, which run instructions without going through fetchOpcode
+    byte[] getMemory(){
+        return this.memory;
+    }
+
+    int[] getRegisters(){
+        return this.registers;
+    }
+
+    int getI(){
+        return this.I;
+    }
+
+    int getPc(){
+        return this.pc;
+    }
+
+    int[] getStack(){
+        return this.stack;
+    }
+
+    int getSp(){
+        return this.sp;
+    }
+
+    void setPc(int pc){
+        this.pc = pc;
+    }
+
+    void addCycles(int count){
+        this.cycles += count;
+    }
+
+    int decode(int opcode){
+        return this.decodeTable[opcode & 0xFFFF];
+    }
+
     //Loads the program into memory
     public void loadProgram(byte[] romProgram)
     {
-        LOG.info("Loading fonts...");
-        // Loads fonts into memory
-        for(int i =0; i < Font.FONT.length; i ++)
+        this.loadProgram(RomImage.of("program", Arrays.copyOf(romProgram, this.length)));
+    }
+
+    // Loads the fonts and a shared ROM image into memory with two bulk copies
+    public void loadProgram(RomImage rom)
+    {
+        System.arraycopy(Font.FONT, 0, this.memory, 0, Font.FONT.length); // Loads fonts into memory
+        if(this.variant != Variant.CHIP8)
         {
-            memory[i] = Font.FONT[i];
+            System.arraycopy(Font.BIG_FONT, 0, this.memory, Font.BIG_FONT_ADDRESS, Font.BIG_FONT.length);
         }
+        rom.installInto(this.memory);
+        this.memoryWritten(0, this.memory.length);
+    }
 
-        LOG.info("Loading program...");
-        for(int i = 0; i < this.length; i++)
+    // Seeds the random number generator used by Cxnn
+    public void setSeed(long seed)
+    {
+        this.randomState = mixSeed(seed);
+    }
+
+    // Turns a seed into a xorshift state, shared with MachineBatch so a lane and a CPU given the same seed draw the same numbers
+    static long mixSeed(long seed)
+    {
+        long z = seed + 0x9E3779B97F4A7C15L; // Spreads the bits of small seeds so nearby seeds give unrelated sequences
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return z == 0 ? 1 : z; // Xorshift never leaves zero
+    }
+
+    // Returns a random number between 0 and 255
+    private int nextRandom()
+    {
+        long x = this.randomState;
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        this.randomState = x;
+        return (int) (x >>> 56);
+    }
+
+    // Lets the input source take the key states the next frame will see
+    public void startFrame()
+    {
+        this.input.frameStarted(this.cycles);
+    }
+
+    // Marks the written pages for the next snapshot and lets the engine drop any code it cached there
+    private void memoryWritten(int address, int length)
+    {
+        int last = Math.min(address + length, this.memory.length) - 1;
+        for(int page = address / Snapshot.PAGE_SIZE; page <= last / Snapshot.PAGE_SIZE; page++)
         {
-            memory[i + 0x200] = romProgram[i];
+            this.dirtyPages[page >>> 6] |= 1L << page;
+        }
+        this.engine.memoryWritten(address, length);
+    }
+
+    private boolean isPageDirty(int page)
+    {
+        return (this.dirtyPages[page >>> 6] & (1L << page)) != 0;
+    }
+
+    // Captures the whole machine, copying only the memory pages written since the last snapshot or restore
+    public Snapshot snapshot()
+    {
+        int pageCount = this.memory.length / Snapshot.PAGE_SIZE;
+        byte[][] pages = new byte[pageCount][];
+        for(int page = 0; page < pageCount; page++)
+        {
+            if(this.base != null && !this.isPageDirty(page))
+            {
+                pages[page] = this.base.pages[page]; // Unchanged, shared with the previous snapshot
+            }
+            else
+            {
+                pages[page] = new byte[Snapshot.PAGE_SIZE];
+                System.arraycopy(this.memory, page * Snapshot.PAGE_SIZE, pages[page], 0, Snapshot.PAGE_SIZE);
+            }
+        }
+        Snapshot snapshot = new Snapshot(pages, this.registers.clone(), this.stack.clone(), this.I, this.pc, this.sp,
+                this.delayTimer, this.soundTimer, this.cycles, this.waitingForKey, this.randomState,
+                this.display.getRows(), this.display.getCols(), this.display.copyPixels(),
+                this.variant, this.display.getPlanes(), this.hires, this.planeMask, this.flags.clone(),
+                this.audioPatternLoaded ? this.audioPattern.clone() : null, this.pitch, this.exited);
+        this.base = snapshot;
+        this.residentSlab = null; // Dirty pages now count from the snapshot, not from the last load
+        Arrays.fill(this.dirtyPages, 0L);
+        return snapshot;
+    }
+
+    // Puts the machine back into the state of the snapshot, only copying pages that differ from what memory holds
+    public void restore(Snapshot snapshot)
+    {
+        if(snapshot.pages.length * Snapshot.PAGE_SIZE != this.memory.length || snapshot.variant != this.variant)
+        {
+            throw new IllegalArgumentException("Snapshot of a " + snapshot.variant + " machine does not match this " + this.variant + " CPU");
+        }
+        for(int page = 0; page < snapshot.pages.length; page++)
+        {
+            boolean same = this.base != null && this.base.pages[page] == snapshot.pages[page] && !this.isPageDirty(page);
+            if(!same)
+            {
+                System.arraycopy(snapshot.pages[page], 0, this.memory, page * Snapshot.PAGE_SIZE, Snapshot.PAGE_SIZE);
+                this.engine.memoryWritten(page * Snapshot.PAGE_SIZE, Snapshot.PAGE_SIZE);
+            }
+        }
+        System.arraycopy(snapshot.registers, 0, this.registers, 0, this.registers.length);
+        System.arraycopy(snapshot.stack, 0, this.stack, 0, this.stack.length);
+        this.I = snapshot.I;
+        this.pc = snapshot.pc;
+        this.sp = snapshot.sp;
+        this.delayTimer = snapshot.delayTimer;
+        this.soundTimer = snapshot.soundTimer;
+        this.cycles = snapshot.cycles;
+        this.waitingForKey = snapshot.waitingForKey;
+        this.randomState = snapshot.randomState;
+        this.hires = snapshot.hires;
+        this.planeMask = snapshot.planeMask;
+        System.arraycopy(snapshot.flags, 0, this.flags, 0, this.flags.length);
+        this.audioPatternLoaded = snapshot.audioPattern != null;
+        if(this.audioPatternLoaded)
+        {
+            System.arraycopy(snapshot.audioPattern, 0, this.audioPattern, 0, this.audioPattern.length);
+        }
+        this.pitch = snapshot.pitch;
+        this.exited = snapshot.exited;
+        this.display.restorePixels(snapshot.displayRows, snapshot.displayCols, snapshot.display);
+        this.base = snapshot;
+        this.residentSlab = null;
+        Arrays.fill(this.dirtyPages, 0L);
+    }
+
+    // Packs the whole machine into a MachineStore slot, only copying the memory pages written since it was loaded from that slot
+    void saveTo(MemorySegment slab, long offset)
+    {
+        if(this.variant != Variant.CHIP8)
+        {
+            throw new IllegalArgumentException("Only CHIP-8 machines fit in a MachineStore");
+        }
+        boolean resident = this.residentSlab == slab && this.residentOffset == offset;
+        int pageCount = this.memory.length / Snapshot.PAGE_SIZE;
+        for(int page = 0; page < pageCount; page++)
+        {
+            if(!resident || this.isPageDirty(page))
+            {
+                MemorySegment.copy(this.memory, page * Snapshot.PAGE_SIZE, slab, ValueLayout.JAVA_BYTE,
+                        offset + MachineStore.MEMORY + page * Snapshot.PAGE_SIZE, Snapshot.PAGE_SIZE);
+            }
+        }
+        slab.set(ValueLayout.JAVA_LONG, offset + MachineStore.CYCLES, this.cycles);
+        slab.set(ValueLayout.JAVA_LONG, offset + MachineStore.RANDOM, this.randomState);
+        MemorySegment.copy(this.display.getPixels(), 0, slab, ValueLayout.JAVA_LONG, offset + MachineStore.DISPLAY, MachineStore.DISPLAY_WORDS);
+        slab.set(ValueLayout.JAVA_SHORT, offset + MachineStore.INDEX, (short) this.I);
+        slab.set(ValueLayout.JAVA_SHORT, offset + MachineStore.PC, (short) this.pc);
+        for(int i = 0; i < 16; i++)
+        {
+            slab.set(ValueLayout.JAVA_SHORT, offset + MachineStore.STACK + 2L * i, (short) this.stack[i]);
+            slab.set(ValueLayout.JAVA_BYTE, offset + MachineStore.REGISTERS + i, (byte) this.registers[i]); // Registers are 8 bit, a byte each is enough
+        }
+        slab.set(ValueLayout.JAVA_BYTE, offset + MachineStore.SP, (byte) this.sp);
+        slab.set(ValueLayout.JAVA_BYTE, offset + MachineStore.DELAY_TIMER, (byte) this.delayTimer);
+        slab.set(ValueLayout.JAVA_BYTE, offset + MachineStore.SOUND_TIMER, (byte) this.soundTimer);
+        slab.set(ValueLayout.JAVA_BYTE, offset + MachineStore.WAITING, (byte) (this.waitingForKey ? 1 : 0));
+        this.base = null; // Dirty pages now count from the slot, so they no longer say which pages match the last snapshot
+        this.residentSlab = slab;
+        this.residentOffset = offset;
+        Arrays.fill(this.dirtyPages, 0L);
+    }
+
+    // Replaces the whole machine with the one packed into a MachineStore slot
+    void loadFrom(MemorySegment slab, long offset)
+    {
+        if(this.variant != Variant.CHIP8)
+        {
+            throw new IllegalArgumentException("Only CHIP-8 machines fit in a MachineStore");
+        }
+        MemorySegment.copy(slab, ValueLayout.JAVA_BYTE, offset + MachineStore.MEMORY, this.memory, 0, this.memory.length);
+        this.engine.memoryWritten(0, this.memory.length); // Code cached for the previous machine is no longer valid
+        this.cycles = slab.get(ValueLayout.JAVA_LONG, offset + MachineStore.CYCLES);
+        this.randomState = slab.get(ValueLayout.JAVA_LONG, offset + MachineStore.RANDOM);
+        MemorySegment.copy(slab, ValueLayout.JAVA_LONG, offset + MachineStore.DISPLAY, this.display.getPixels(), 0, MachineStore.DISPLAY_WORDS);
+        this.display.markAllDirty();
+        this.I = slab.get(ValueLayout.JAVA_SHORT, offset + MachineStore.INDEX) & 0xFFFF;
+        this.pc = slab.get(ValueLayout.JAVA_SHORT, offset + MachineStore.PC) & 0xFFFF;
+        for(int i = 0; i < 16; i++)
+        {
+            this.stack[i] = slab.get(ValueLayout.JAVA_SHORT, offset + MachineStore.STACK + 2L * i) & 0xFFFF;
+            this.registers[i] = slab.get(ValueLayout.JAVA_BYTE, offset + MachineStore.REGISTERS + i) & 0xFF;
+        }
+        this.sp = slab.get(ValueLayout.JAVA_BYTE, offset + MachineStore.SP);
+        this.delayTimer = slab.get(ValueLayout.JAVA_BYTE, offset + MachineStore.DELAY_TIMER) & 0xFF;
+        this.soundTimer = slab.get(ValueLayout.JAVA_BYTE, offset + MachineStore.SOUND_TIMER) & 0xFF;
+        this.waitingForKey = slab.get(ValueLayout.JAVA_BYTE, offset + MachineStore.WAITING) != 0;
+        this.base = null; // The next snapshot copies every page
+        this.residentSlab = slab;
+        this.residentOffset = offset;
+        Arrays.fill(this.dirtyPages, 0L);
+    }
+
+    // Sends the rows drawn since the last frame to the video sink, called once per frame by the scheduler
+    public void presentFrame() {
+        long dirtyRows = this.display.takeDirtyRows();
+        if(dirtyRows != 0)
+        {
+            this.video.refresh(this.display, dirtyRows);
         }
     }
 
@@ -67,248 +439,342 @@ public class CPU {
 
     // Decodes and executes the opcode
     public void decodeAndExecute(short opcode) {
-        short x = (short) ((opcode & 0x0F00) >>> 8); // Second nibble (Used to get x in some instructions)
-        short y = (short) ((opcode & 0x00F0) >>> 4); // Third nibble (Used to get y in some instructions)
-        short n = (short) (opcode & 0x000F); // Fourth nibble (Used to get n in some instructions)
-        short nn = (short) (opcode & 0x00FF); // Third and fourth nibbled (Used to get nn in some instructions)
-        short nnn = (short) (opcode & 0x0FFF); // Second, third and fourth nibble (Used to get nnn in some instructions)
-
-        String opcode_hex = String.format("%04X", opcode);
-        LOG.info("Opcode: {}" , opcode_hex);
-
-        switch(opcode) {
-                    case 0x00E0:
-                        LOG.info("Instruction: 00E0");
-                        this.display.clearDisplay(); // Clears the display
-                        break;
-                    case 0x00EE:
-                        LOG.info("Instruction: 00EE");
-                        this.pc =  this.stack[this.sp--]; // Sets the pc to the stack pointer and decrement the stack pointer
-                        break;
+        int op = this.decodeTable[opcode & 0xFFFF]; // Looks up the operation in the decode table
+
+        if(Tracer.ENABLED)
+        {
+            this.tracer.record(this.pc - 2, opcode); // Opcode was fetched from the previous address
         }
 
-        switch(opcode & 0xF000) {
-            case 0x1000:
-                LOG.info("Instruction: 1nnn");
+        this.execute(op, opcode & 0xFFFF);
+        this.cycles++;
+    }
+
+    // Fetches and executes one instruction
+    public void step() {
+        this.decodeAndExecute(this.fetchOpcode());
+    }
+
+    // Executes up to budget instructions and returns how many were executed, stops early when waiting for a key
+    public int run(int budget) {
+        return this.engine.run(this, budget);
+    }
+
+    // Decrements the timers, called at 60 Hz by the scheduler
+    public void tickTimers() {
+        this.buzzing = this.soundTimer > 0; // The frame just run is heard even if this tick stops the sound
+        if(this.delayTimer > 0)
+        {
+            this.delayTimer--; // Decrements delay timer
+        }
+        if(this.soundTimer > 0)
+        {
+            this.soundTimer--; // Decrements sound timer
+        }
+    }
+
+    // Executes an opcode that has already been decoded into an operation id
+    void execute(int op, int opcode) {
+        int x = (opcode & 0x0F00) >>> 8; // Second nibble (Used to get x in some instructions)
+        int y = (opcode & 0x00F0) >>> 4; // Third nibble (Used to get y in some instructions)
+        int n = opcode & 0x000F; // Fourth nibble (Used to get n in some instructions)
+        int nn = opcode & 0x00FF; // Third and fourth nibbled (Used to get nn in some instructions)
+        int nnn = opcode & 0x0FFF; // Second, third and fourth nibble (Used to get nnn in some instructions)
+
+        if(Metrics.ENABLED)
+        {
+            this.metrics.countOp(op);
+        }
+
+        switch(op) {
+            case Decoder.NOP:
+                break;
+            case Decoder.CLS:
+                this.display.clearPlanes(this.planeMask); // Clears the display, on XO-CHIP only the selected planes
+                break;
+            case Decoder.RET:
+                this.pc =  this.stack[this.sp--]; // Sets the pc to the stack pointer and decrement the stack pointer
+                break;
+            case Decoder.JP:
                 this.pc = nnn; // Sets program counter to location nnn
                 break;
-            case 0x2000:
-                LOG.info("Instruction: 2nnn");
+            case Decoder.CALL:
                 this.stack[++sp] = this.pc; // Increments stack pointer and then put pc at top of stack
                 this.pc = nnn; // Sets pc to location nnn to call subroutine at nnn
                 break;
-            case 0x3000:
-                LOG.info("Instruction: 3xnn");
+            case Decoder.SE_VX_NN:
                 if (this.registers[x] == nn) // If register x is equal to nn increment the program counter by 2
                 {
-                    this.pc += 2;
+                    this.skip();
                 }
                 break;
-            case 0x4000:
-                LOG.info("Instruction: 4xnn");
+            case Decoder.SNE_VX_NN:
                 if (this.registers[x] != nn) // If registers x is not equal to nn increment the program counter by 2
                 {
-                    this.pc += 2;
+                    this.skip();
                 }
                 break;
-            case 0x5000:
-                LOG.info("Instruction: 5xy0");
+            case Decoder.SE_VX_VY:
                 if (this.registers[x] == this.registers[y]) // If register x is equal to register y increment program counter by 2
                 {
-                    this.pc += 2;
+                    this.skip();
                 }
                 break;
-            case 0x6000:
-                LOG.info("Instruction: 6xnn");
+            case Decoder.LD_VX_NN:
                 this.registers[x] = nn; // Set register x to nn
                 break;
-            case 0x7000:
-                LOG.info("Instruction: 7xnn");
-                int result = this.registers[x] + nn;
-                if(result >= 256) // Checking for overflow
-                {
-                    this.registers[x] = result - 256;
-                }
-                else {
-                    this.registers[x] = result;
-                }
-                break;
-            case 0xA000:
-                LOG.info("Instruction: Annn");
-                this.I = nnn; // Set register I to address nnn
-                break;
-            case 0xB000:
-                LOG.info("Instruction: Bnnn");
-                this.pc+= (nnn + registers[0]); // Set program counter to nnn + register 0
-                break;
-            case 0xC000:
-                LOG.info("Instruction: Cxnn");
-                Random r = new Random();
-                this.registers[x] = (r.nextInt(256) & nn); // Set register x to random number between 0 and 255 and nn
-                break;
-            case 0xD000:
-                LOG.info("Instruction: Dxy0");
-                this.registers[0xF] = 0; // Set register F to 0
-                byte px; // Pixel in memory
-
-                for(int row = 0; row < n; row++)
-                {
-                    px = this.memory[this.I + row]; // Setting pixel to current value at register I plus column j
-                    for(int col = 0; col < 8; col++)
-                    {
-                        if((px & (0x80 >>> col)) != 0) // Checking if the current pixel is equal to 1
-                        {
-                            byte pixel = this.display.getPixel(row + this.registers[y],col + this.registers[x]);
-                            if(pixel == 1) // Checking if the pixel on display is equal to one
-                            {
-                                this.registers[0xF] = 1; // Sets register F to 1 to indicate a collision
-                            }
-                            byte pixelXOR = (byte) (pixel ^ 1); // Setting the value of the pixel using xor
-                            this.display.setPixel(row + this.registers[y], col + this.registers[x],pixelXOR);
-                        }
-                    }
-                }
-                this.window.repaint();
+            case Decoder.ADD_VX_NN:
+                this.registers[x] = (this.registers[x] + nn) & 0xFF; // Set register x to x + nn, wrapping on overflow
                 break;
-        }
-        switch(opcode & 0xF00F)
-        {
-            case 0x8000:
-                LOG.info("Instruction: 8xy0");
+            case Decoder.LD_VX_VY:
                 this.registers[x] = this.registers[y]; // Set register x to register y
                 break;
-            case 0x8001:
-                LOG.info("Instruction: 8xy1");
+            case Decoder.OR:
                 this.registers[x] = (this.registers[x] | this.registers[y]); // Set register x to x or y
                 break;
-            case 0x8002:
-                LOG.info("Instruction: 8xy2");
+            case Decoder.AND:
                 this.registers[x] = (this.registers[x] & this.registers[y]); // Set register x to x and y
                 break;
-            case 0x8003:
-                LOG.info("Instruction: 8xy3");
+            case Decoder.XOR:
                 this.registers[x] = (this.registers[x] ^ this.registers[y]); // Set register x to x xor y
                 break;
-            case 0x8004:
-                LOG.info("Instruction: 8xy4");
+            case Decoder.ADD_VX_VY:
                 int sum = this.registers[x] + this.registers[y];
                 this.registers[0xF] = sum > 0xFF ? 1:0; // If register x + register y is greater than 255 set register F to 1 else 0
                 this.registers[x] = sum & 0xFF; //Set register x to x + y
                 break;
-            case 0x8005:
-                LOG.info("Instruction: 8xy5");
+            case Decoder.SUB:
                 this.registers[0xF] = this.registers[x] > this.registers[y] ? 1:0; // If register x is greater than register y then set register F to 1 else 0
                 this.registers[x] = (this.registers[x] - this.registers[y]) & 0xFF; // Set register x to x - y
                 break;
-            case 0x8006:
-                LOG.info("Instruction: 8xy6");
+            case Decoder.SHR:
                 this.registers[0xF] = (this.registers[x] & 0x1) == 1 ? 1:0; // Set register F to 1 or 0 depending on what the lsb it
                 this.registers[x] = this.registers[x] >> 1; // Set register x to x divided by 2
                 break;
-            case 0x8007:
-                LOG.info("Instruction: 8xy7");
+            case Decoder.SUBN:
                 this.registers[0xF] = this.registers[y] > this.registers[x] ? 1:0; // Set register F to 1 if y is greater than x else 0
                 this.registers[x] = (this.registers[y] - this.registers[x]) & 0xFF;
                 break;
-            case 0x800E:
-                LOG.info("Instruction: 8xy8");
+            case Decoder.SHL:
                 this.registers[0xF] = this.registers[x] >>> 7 & 0x1; // Set register F to 1 if the msb of x equals 1 or 0 if its equal to zero
-                this.registers[x] = this.registers[x] << 1; //Set register x to x * 2
+                this.registers[x] = (this.registers[x] << 1) & 0xFF; //Set register x to x * 2
                 break;
-            case 0x9000:
-                LOG.info("Instruction: 9xy0");
+            case Decoder.SNE_VX_VY:
                 if(this.registers[x] != this.registers[y]) // If register x is not equal to y increment pc by 2
                 {
-                    this.pc+=2;
+                    this.skip();
                 }
                 break;
-        }
-        switch(opcode & 0xF0FF){
-            case 0xE09E:
-                LOG.info("Instruction: Ex9E");
-                if(this.keyboardRegisters[this.registers[x]] == 1) //Checks if a key has been pressed
+            case Decoder.LD_I:
+                this.I = nnn; // Set register I to address nnn
+                break;
+            case Decoder.JP_V0:
+                this.pc = nnn + this.registers[this.variant.jumpUsesVx ? x : 0]; // Set program counter to nnn + register 0, or + register x on SUPER-CHIP
+                break;
+            case Decoder.RND:
+                this.registers[x] = (this.nextRandom() & nn); // Set register x to random number between 0 and 255 and nn
+                break;
+            case Decoder.DRW:
+                this.registers[0xF] = this.draw(this.registers[x], this.registers[y], n) ? 1 : 0; // Sets register F to 1 to indicate a collision
+                break;
+            case Decoder.SKP:
+                if(this.input.isKeyPressed(this.registers[x])) //Checks if a key has been pressed
                 {
-                    this.pc += 2; //Increments pc by 2
+                    this.skip(); //Skips the next instruction
                 }
                 break;
-            case 0xE0A1:
-                LOG.info("Instruction: ExA1");
-                if(this.keyboardRegisters[this.registers[x]] == 0) //Checks if a key hasn't been pressed
+            case Decoder.SKNP:
+                if(!this.input.isKeyPressed(this.registers[x])) //Checks if a key hasn't been pressed
                 {
-                    this.pc+= 2; //Increments pc by 2
+                    this.skip(); //Skips the next instruction
                 }
                 break;
-            case 0xF007:
-                LOG.info("Instruction: Fx07");
+            case Decoder.LD_VX_DT:
                 this.registers[x] = this.delayTimer; // Set register x to delay timer
                 break;
-            case 0xF00A:
-                LOG.info("Instruction: Fx0A");
-                int keyPressed = 0;
-                while(keyPressed == 0) // Waits for a key to be pressed
+            case Decoder.LD_VX_K:
+                int keyPressed = this.input.pressedKey(); // Gets the lowest key pressed
+                if(keyPressed < 0)
                 {
-                    for(int i = 0; i < 16; i++) //Iterates through all possible keys
-                    {
-                        if(this.keyboardRegisters[i] == 1) //Checks if a key is pressed
-                        {
-                            keyPressed = 1; // Set to one to end the while loop
-                            this.registers[x] = i; // Set register x to the key value
-                            break;
-                        }
-                    }
-
+                    this.pc -= 2; // No key yet, runs this instruction again next time instead of spinning here
+                    this.waitingForKey = true;
+                }
+                else
+                {
+                    this.registers[x] = keyPressed; // Set register x to the key value
+                    this.waitingForKey = false;
                 }
                 break;
-            case 0xF015:
-                LOG.info("Instruction: Fx15");
+            case Decoder.LD_DT_VX:
                 this.delayTimer = registers[x]; // Sets the delay timer to register x
                 break;
-            case 0xF018:
-                LOG.info("Instruction: Fx18");
+            case Decoder.LD_ST_VX:
                 this.soundTimer = registers[x]; // Sets the sound timer to register x
                 break;
-            case 0xF01E:
-                LOG.info("Instruction: Fx1E");
+            case Decoder.ADD_I_VX:
                 this.I += this.registers[x]; // Sets I to I + register x
                 break;
-            case 0xF029:
-                LOG.info("Instruction: Fx29");
+            case Decoder.LD_F_VX:
                 this.I = this.registers[x] * 5; // Sets I to sprite at register x
                 break;
-            case 0xF033:
-                LOG.info("Instruction: Fx33");
+            case Decoder.LD_B_VX:
                 int value = this.registers[x]; // Gets the value of register x
                 this.memory[this.I+2] = (byte) (value % 10); // Sets I + 2 to the least significant bit
                 value /= 10;
                 this.memory[this.I+1] = (byte) (value % 10); // Sets I + 1 to the middle bit
                 value /= 10;
                 this.memory[this.I] = (byte) (value % 10); // Sets I to the most significant bit
+                this.memoryWritten(this.I, 3);
                 break;
-            case 0xF055:
-                LOG.info("Instruction: Fx55");
+            case Decoder.LD_I_VX:
                 for(int i = 0; i <= x; i++)
                 {
                     this.memory[this.I + i] = (byte) registers[i]; // Sets in memory the value of register 0 to x starting at I
                 }
+                this.memoryWritten(this.I, x + 1);
+                if(this.variant.incrementsI)
+                {
+                    this.I += x + 1;
+                }
                 break;
-            case 0xF065:
-                LOG.info("Instruction: Fx65");
+            case Decoder.LD_VX_I:
                 for(int i = 0; i <= x; i++)
                 {
-                    registers[i] = this.memory[this.I + i]; // Reads from memory the values starting at I in registers 0 to x
+                    registers[i] = this.memory[this.I + i] & 0xFF; // Reads from memory the values starting at I in registers 0 to x
+                }
+                if(this.variant.incrementsI)
+                {
+                    this.I += x + 1;
+                }
+                break;
+            case Decoder.SCD:
+                this.display.scrollDown(n * this.pixelSize(), this.planeMask); // Scrolls down n lines
+                break;
+            case Decoder.SCU:
+                this.display.scrollUp(n * this.pixelSize(), this.planeMask); // Scrolls up n lines
+                break;
+            case Decoder.SCR:
+                this.display.scrollRight(4 * this.pixelSize(), this.planeMask); // Scrolls right 4 pixels
+                break;
+            case Decoder.SCL:
+                this.display.scrollLeft(4 * this.pixelSize(), this.planeMask); // Scrolls left 4 pixels
+                break;
+            case Decoder.EXIT:
+                this.pc -= 2; // Stays on this instruction
+                this.exited = true;
+                break;
+            case Decoder.LOW:
+                this.hires = false;
+                this.display.clearDisplay(); // Switching resolution starts from a blank screen
+                break;
+            case Decoder.HIGH:
+                this.hires = true;
+                this.display.clearDisplay();
+                break;
+            case Decoder.LD_HF_VX:
+                this.I = Font.BIG_FONT_ADDRESS + (this.registers[x] & 0xF) * 10; // Sets I to the large sprite of the digit in register x
+                break;
+            case Decoder.LD_R_VX:
+                System.arraycopy(this.registers, 0, this.flags, 0, x + 1); // Saves registers 0 to x in the user flags
+                break;
+            case Decoder.LD_VX_R:
+                System.arraycopy(this.flags, 0, this.registers, 0, x + 1); // Reads registers 0 to x from the user flags
+                break;
+            case Decoder.SAVE_RANGE:
+                int count = Math.abs(x - y) + 1;
+                for(int i = 0; i < count; i++)
+                {
+                    this.memory[this.I + i] = (byte) this.registers[x <= y ? x + i : x - i]; // Registers x to y in either order, I is not changed
+                }
+                this.memoryWritten(this.I, count);
+                break;
+            case Decoder.LOAD_RANGE:
+                for(int i = 0; i <= Math.abs(x - y); i++)
+                {
+                    this.registers[x <= y ? x + i : x - i] = this.memory[this.I + i] & 0xFF;
                 }
                 break;
+            case Decoder.LD_I_LONG:
+                this.I = (this.memory[this.pc] & 0xFF) << 8 | (this.memory[this.pc + 1] & 0xFF); // Sets I to the 16 bit address in the next two bytes
+                this.pc += 2;
+                break;
+            case Decoder.PLANE:
+                this.planeMask = x & ((1 << this.display.getPlanes()) - 1); // Selects the planes to draw on
+                break;
+            case Decoder.AUDIO:
+                System.arraycopy(this.memory, this.I, this.audioPattern, 0, this.audioPattern.length); // Loads 16 bytes of audio samples from I
+                this.audioPatternLoaded = true;
+                break;
+            case Decoder.PITCH:
+                this.pitch = this.registers[x]; // Sets the playback rate of the audio pattern
+                break;
         }
-        if(this.delayTimer > 0)
+    }
+
+    // Skips the next instruction, which on XO-CHIP can be the four byte F000 nnnn
+    private void skip() {
+        if(this.variant == Variant.XOCHIP && this.memory[this.pc] == (byte) 0xF0 && this.memory[this.pc + 1] == 0)
         {
-            this.delayTimer--; // Decrements delay timer
+            this.pc += 4;
         }
-        if(this.soundTimer > 0)
+        else
         {
-            LOG.info("BEEP");
-            this.soundTimer--; // Decrements sound timer
+            this.pc += 2;
         }
+    }
+
+    // Display pixels per CHIP-8 pixel, 2 in SUPER-CHIP and XO-CHIP lo-res mode
+    private int pixelSize() {
+        return this.hires || this.variant == Variant.CHIP8 ? 1 : 2;
+    }
 
+    // XORs an n row sprite from I onto the display at (x, y) and returns true if a lit pixel was turned off.
+    // SUPER-CHIP and XO-CHIP draw 16x16 sprites for n = 0, and XO-CHIP reads one sprite per selected plane
+    private boolean draw(int spriteX, int spriteY, int n) {
+        boolean collision = false;
+        if(this.variant == Variant.CHIP8)
+        {
+            for(int row = 0; row < n; row++)
+            {
+                // XORs a whole row of the sprite at once, a collision is any lit pixel it turns off
+                collision |= this.display.drawSpriteRow(spriteY + row, spriteX, this.memory[this.I + row] & 0xFF, 8);
+            }
+            return collision;
+        }
+        int size = this.pixelSize();
+        int width = n == 0 ? 16 : 8;
+        int height = n == 0 ? 16 : n;
+        int x0 = spriteX % (this.display.getCols() / size) * size; // The top left corner always wraps, the rest of the sprite may be clipped
+        int y0 = spriteY % (this.display.getRows() / size) * size;
+        int addressMask = this.memory.length - 1;
+        int address = this.I;
+        for(int plane = 0; plane < this.display.getPlanes(); plane++)
+        {
+            if((this.planeMask & (1 << plane)) == 0)
+            {
+                continue;
+            }
+            for(int row = 0; row < height; row++)
+            {
+                int bits = this.memory[address & addressMask] & 0xFF;
+                if(width == 16)
+                {
+                    bits = bits << 8 | (this.memory[(address + 1) & addressMask] & 0xFF);
+                }
+                address += width / 8;
+                if(size == 1)
+                {
+                    collision |= this.display.drawSpriteRow(plane, y0 + row, x0, bits, width);
+                }
+                else
+                {
+                    long doubled = Display.doubleBits(bits, width); // Each lo-res pixel is a 2x2 block
+                    collision |= this.display.drawSpriteRow(plane, y0 + 2 * row, x0, doubled, 2 * width);
+                    collision |= this.display.drawSpriteRow(plane, y0 + 2 * row + 1, x0, doubled, 2 * width);
+                }
+            }
+        }
+        return collision;
     }
 
 }
@@ -0,0 +1,230 @@
+package com.arjun.chip8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Writes the small class files JitEngine needs, a constructor and one method without branches so no stack map frames are needed
+final class ClassWriter {
+    // Opcodes used by JitEngine
+    static final int ALOAD_0 = 0x2A, ALOAD_1 = 0x2B, ALOAD_2 = 0x2C, ASTORE_2 = 0x4D;
+    static final int ILOAD = 0x15, ISTORE = 0x36;
+    static final int BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13;
+    static final int IALOAD = 0x2E, IASTORE = 0x4F;
+    static final int IADD = 0x60, ISUB = 0x64, IMUL = 0x68, ISHL = 0x78, ISHR = 0x7A, IUSHR = 0x7C, IAND = 0x7E, IOR = 0x80, IXOR = 0x82;
+    static final int GETFIELD = 0xB4, PUTFIELD = 0xB5, INVOKEVIRTUAL = 0xB6, INVOKESPECIAL = 0xB7, RETURN = 0xB1;
+
+    private static final int CLASS_VERSION = 52; // Java 8 class files, the generated code uses nothing newer
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(this.pool);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private final DataOutputStream methodsOut = new DataOutputStream(this.methods);
+    private int methodCount;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int interfaceClass;
+
+    ClassWriter(String name, String superName, String interfaceName)
+    {
+        this.thisClass = this.classRef(name);
+        this.superClass = this.classRef(superName);
+        this.interfaceClass = this.classRef(interfaceName);
+    }
+
+    int utf8(String value)
+    {
+        return this.entry("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    int integer(int value)
+    {
+        return this.entry("I" + value, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    int classRef(String name)
+    {
+        int nameIndex = this.utf8(name);
+        return this.entry("C" + name, out -> {
+            out.writeByte(7);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    int fieldRef(String owner, String name, String descriptor)
+    {
+        return this.memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor)
+    {
+        return this.memberRef(10, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor)
+    {
+        int ownerIndex = this.classRef(owner);
+        int nameIndex = this.utf8(name);
+        int descriptorIndex = this.utf8(descriptor);
+        int nameAndType = this.entry("N" + name + ":" + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return this.entry(tag + owner + "." + name + ":" + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int entry(String key, PoolEntry writer)
+    {
+        Integer index = this.entries.get(key);
+        if(index != null)
+        {
+            return index;
+        }
+        try
+        {
+            writer.write(this.poolOut);
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        this.entries.put(key, this.poolCount);
+        return this.poolCount++;
+    }
+
+    // Adds a method whose body is the given bytecode
+    void method(int access, String name, String descriptor, Code code, int maxStack, int maxLocals)
+    {
+        int nameIndex = this.utf8(name);
+        int descriptorIndex = this.utf8(descriptor);
+        int codeIndex = this.utf8("Code");
+        byte[] bytes = code.toByteArray();
+        try
+        {
+            this.methodsOut.writeShort(access);
+            this.methodsOut.writeShort(nameIndex);
+            this.methodsOut.writeShort(descriptorIndex);
+            this.methodsOut.writeShort(1); // One attribute, the code
+            this.methodsOut.writeShort(codeIndex);
+            this.methodsOut.writeInt(12 + bytes.length);
+            this.methodsOut.writeShort(maxStack);
+            this.methodsOut.writeShort(maxLocals);
+            this.methodsOut.writeInt(bytes.length);
+            this.methodsOut.write(bytes);
+            this.methodsOut.writeShort(0); // No exception handlers
+            this.methodsOut.writeShort(0); // No code attributes
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        this.methodCount++;
+    }
+
+    byte[] toByteArray()
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try
+        {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            out.writeShort(this.poolCount);
+            this.pool.writeTo(out);
+            out.writeShort(0x0010 | 0x0020); // Final, super
+            out.writeShort(this.thisClass);
+            out.writeShort(this.superClass);
+            out.writeShort(1);
+            out.writeShort(this.interfaceClass);
+            out.writeShort(0); // No fields
+            out.writeShort(this.methodCount);
+            this.methods.writeTo(out);
+            out.writeShort(0); // No class attributes
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private interface PoolEntry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Bytecode for one method body
+    static final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final ClassWriter owner;
+
+        Code(ClassWriter owner)
+        {
+            this.owner = owner;
+        }
+
+        Code op(int opcode)
+        {
+            this.bytes.write(opcode);
+            return this;
+        }
+
+        Code op(int opcode, int index) // Opcodes with a two byte constant pool index
+        {
+            this.bytes.write(opcode);
+            this.bytes.write(index >>> 8);
+            this.bytes.write(index);
+            return this;
+        }
+
+        Code local(int opcode, int slot) // iload and istore with a one byte slot
+        {
+            this.bytes.write(opcode);
+            this.bytes.write(slot);
+            return this;
+        }
+
+        Code push(int value)
+        {
+            if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+            {
+                this.bytes.write(BIPUSH);
+                this.bytes.write(value);
+            }
+            else if(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+            {
+                this.bytes.write(SIPUSH);
+                this.bytes.write(value >>> 8);
+                this.bytes.write(value);
+            }
+            else
+            {
+                this.op(LDC_W, this.owner.integer(value));
+            }
+            return this;
+        }
+
+        byte[] toByteArray()
+        {
+            return this.bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.arjun.chip8;
+
+// A block of instructions compiled to JVM bytecode by JitEngine
+interface CompiledBlock {
+    void run(CPU cpu); // Runs every instruction of the block except a final jump, skip, wait or write
+}
@@ -0,0 +1,496 @@
+package com.arjun.chip8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Breakpoints, memory watchpoints, register conditions and stepping for one CPU.
+//
+// The debugger is an execution engine that checks every instruction, but it is only installed on the CPU while
+// something needs checking. With nothing set the CPU runs its own engine untouched, so a debuggable session runs
+// exactly as fast as any other until a breakpoint is added. When stopped, the emulation thread waits for commands,
+// which are typed into the console or submitted from any thread and always carried out on the emulation thread.
+public class Debugger implements ExecutionEngine, FrameListener {
+
+    // A register compared against a value, like "V3 == 5" or "I >= 0x300"
+    public static final class Condition {
+        private static final String[] REGISTERS = {"I", "DT", "ST", "SP"}; // After V0 to VF
+
+        private final int register; // 0 to 15 for V0 to VF, then the names above
+        private final String operator;
+        private final int value;
+        private boolean last; // Result of the previous test, conditions without an address break when they become true
+
+        Condition(int register, String operator, int value)
+        {
+            this.register = register;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        public static Condition parse(String[] words, int from)
+        {
+            if(words.length != from + 3)
+            {
+                throw new IllegalArgumentException("Expected <register> <operator> <value>");
+            }
+            String name = words[from].toUpperCase();
+            int register = -1;
+            if(name.length() == 2 && name.charAt(0) == 'V')
+            {
+                register = Character.digit(name.charAt(1), 16);
+            }
+            for(int i = 0; i < REGISTERS.length; i++)
+            {
+                if(REGISTERS[i].equals(name))
+                {
+                    register = 16 + i;
+                }
+            }
+            if(register < 0)
+            {
+                throw new IllegalArgumentException("Unknown register: " + words[from]);
+            }
+            String operator = words[from + 1];
+            if(!List.of("==", "!=", "<", "<=", ">", ">=").contains(operator))
+            {
+                throw new IllegalArgumentException("Unknown operator: " + operator);
+            }
+            return new Condition(register, operator, parseNumber(words[from + 2]));
+        }
+
+        boolean test(CPU cpu)
+        {
+            int actual;
+            switch(this.register)
+            {
+                case 16: actual = cpu.getI(); break;
+                case 17: actual = cpu.delayTimer; break;
+                case 18: actual = cpu.soundTimer; break;
+                case 19: actual = cpu.getSp(); break;
+                default: actual = cpu.getRegisters()[this.register]; break;
+            }
+            switch(this.operator)
+            {
+                case "==": return actual == this.value;
+                case "!=": return actual != this.value;
+                case "<": return actual < this.value;
+                case "<=": return actual <= this.value;
+                case ">": return actual > this.value;
+                default: return actual >= this.value;
+            }
+        }
+
+        // True only on the instruction where the condition goes from false to true
+        boolean becameTrue(CPU cpu)
+        {
+            boolean now = this.test(cpu);
+            boolean rising = now && !this.last;
+            this.last = now;
+            return rising;
+        }
+
+        @Override
+        public String toString()
+        {
+            return (this.register < 16 ? "V" + Integer.toHexString(this.register).toUpperCase() : REGISTERS[this.register - 16])
+                    + " " + this.operator + " " + this.value;
+        }
+    }
+
+    private enum Mode { RUN, STEP, STEP_OVER, FINISH }
+
+    private final CPU cpu;
+    private final ExecutionEngine engine; // The CPU's own engine, runs whenever nothing needs checking
+    private final PrintStream out;
+    private final BlockingQueue<String> commands;
+
+    private final Map<Integer, Condition> breakpoints; // Address to the condition it needs, null to always stop
+    private final List<int[]> watchpoints; // Start and end address pairs
+    private final List<Condition> conditions; // Stop wherever they become true
+
+    private Mode mode;
+    private int stepSp; // Stack depth that ends a step over or finish
+    private int stepPc; // Address that ends a step over
+    private boolean pauseRequested;
+    private boolean resuming; // The first instruction after stopping is not checked again
+    private boolean executing; // Inside cpu.step, so writes come from the program
+    private String watchHit; // Set by memoryWritten when a write lands on a watchpoint
+
+    public Debugger(CPU cpu, PrintStream out)
+    {
+        this.cpu = cpu;
+        this.engine = cpu.getEngine();
+        this.out = out;
+        this.commands = new LinkedBlockingQueue<>();
+        this.breakpoints = new TreeMap<>();
+        this.watchpoints = new ArrayList<>();
+        this.conditions = new ArrayList<>();
+        this.mode = Mode.RUN;
+    }
+
+    // Queues a command from any thread, it runs at the end of the frame or straight away when stopped
+    public void submit(String command)
+    {
+        this.commands.add(command);
+    }
+
+    // Reads commands from the stream on a thread of its own
+    public void startConsole(InputStream in)
+    {
+        Thread console = new Thread(() -> {
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(in)))
+            {
+                String line;
+                while((line = reader.readLine()) != null)
+                {
+                    this.submit(line);
+                }
+            }
+            catch(IOException e)
+            {
+                this.out.println("Debugger console closed: " + e.getMessage());
+            }
+        }, "debug-console");
+        console.setDaemon(true);
+        console.start();
+    }
+
+    // Stops before the next instruction runs, call on the emulation thread or before it starts
+    public void pause()
+    {
+        this.pauseRequested = true;
+        this.install();
+    }
+
+    public void addBreakpoint(int address, Condition condition)
+    {
+        this.breakpoints.put(address, condition);
+        this.install();
+    }
+
+    public void addWatchpoint(int start, int length)
+    {
+        this.watchpoints.add(new int[]{start, start + length});
+        this.install();
+    }
+
+    public void addCondition(Condition condition)
+    {
+        this.conditions.add(condition);
+        this.install();
+    }
+
+    // Puts the debugger in front of the CPU's engine while anything needs checking, and takes it out again when not
+    private void install()
+    {
+        boolean needed = this.pauseRequested || this.mode != Mode.RUN || !this.breakpoints.isEmpty()
+                || !this.watchpoints.isEmpty() || !this.conditions.isEmpty();
+        this.cpu.setEngine(needed ? this : this.engine);
+    }
+
+    // Runs queued commands between frames, which is how a pause typed while running gets in
+    @Override
+    public void frameEnded(CPU cpu, long frame)
+    {
+        String command;
+        while((command = this.commands.poll()) != null)
+        {
+            this.execute(command); // A step or continue here just takes effect from the next frame
+        }
+        this.install();
+    }
+
+    // Runs one instruction at a time, checking before each one and after any write it makes
+    @Override
+    public int run(CPU cpu, int budget)
+    {
+        int executed = 0;
+        while(executed < budget)
+        {
+            if(cpu.getEngine() != this)
+            {
+                return executed + this.engine.run(cpu, budget - executed); // Everything was cleared while stopped
+            }
+            String reason = this.resuming ? null : this.checkBefore(cpu);
+            this.resuming = false;
+            if(reason != null)
+            {
+                this.stop(reason);
+                continue;
+            }
+            this.executing = true;
+            cpu.step();
+            this.executing = false;
+            executed++;
+            if(this.watchHit != null)
+            {
+                String hit = this.watchHit;
+                this.watchHit = null;
+                this.stop(hit);
+            }
+            else if(this.stepEnded(cpu))
+            {
+                this.stop("step");
+            }
+            if(cpu.isWaitingForKey() || cpu.hasExited())
+            {
+                break;
+            }
+        }
+        return executed;
+    }
+
+    private String checkBefore(CPU cpu)
+    {
+        if(this.pauseRequested)
+        {
+            this.pauseRequested = false;
+            return "paused";
+        }
+        int pc = cpu.getPc();
+        if(this.breakpoints.containsKey(pc))
+        {
+            Condition condition = this.breakpoints.get(pc);
+            if(condition == null || condition.test(cpu))
+            {
+                return "breakpoint";
+            }
+        }
+        for(Condition condition : this.conditions)
+        {
+            if(condition.becameTrue(cpu))
+            {
+                return "condition " + condition;
+            }
+        }
+        return null;
+    }
+
+    private boolean stepEnded(CPU cpu)
+    {
+        switch(this.mode)
+        {
+            case STEP: return true;
+            case STEP_OVER: return cpu.getPc() == this.stepPc && cpu.getSp() == this.stepSp || cpu.getSp() < this.stepSp; // Back from the call, or the routine returned
+            case FINISH: return cpu.getSp() < this.stepSp;
+            default: return false;
+        }
+    }
+
+    @Override
+    public void memoryWritten(int address, int length)
+    {
+        this.engine.memoryWritten(address, length); // Keeps the real engine's caches right for when it runs again
+        if(!this.executing)
+        {
+            return; // Loading a program or restoring a snapshot
+        }
+        for(int[] watch : this.watchpoints)
+        {
+            if(address < watch[1] && watch[0] < address + length)
+            {
+                this.watchHit = String.format("write to 0x%03X-0x%03X", address, address + length - 1);
+            }
+        }
+    }
+
+    @Override
+    public void preload(CPU cpu, RomImage rom)
+    {
+        this.engine.preload(cpu, rom);
+    }
+
+    // Shows where the CPU stopped and carries out commands until one resumes it
+    private void stop(String reason)
+    {
+        this.mode = Mode.RUN;
+        this.out.printf("Stopped (%s) at 0x%03X  %s%n", reason, this.cpu.getPc(), this.disassemble(this.cpu.getPc()));
+        try
+        {
+            while(!this.execute(this.commands.take()))
+            {
+                // Commands that only look at the machine keep it stopped
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt(); // Lets the program run on rather than hang the thread
+        }
+        this.resuming = true;
+        this.install();
+    }
+
+    // Carries out one command and returns true if it resumes execution
+    private boolean execute(String line)
+    {
+        String[] words = line.trim().split("\\s+");
+        try
+        {
+            switch(words[0])
+            {
+                case "": return false;
+                case "c": case "continue": return true;
+                case "s": case "step": this.mode = Mode.STEP; return true;
+                case "n": case "next":
+                    if(this.cpu.decode(this.opcodeAt(this.cpu.getPc())) != Decoder.CALL)
+                    {
+                        this.mode = Mode.STEP; // Only a call has something to step over
+                        return true;
+                    }
+                    this.mode = Mode.STEP_OVER;
+                    this.stepPc = this.cpu.getPc() + 2;
+                    this.stepSp = this.cpu.getSp();
+                    return true;
+                case "finish": this.mode = Mode.FINISH; this.stepSp = this.cpu.getSp(); return true;
+                case "pause": this.pause(); return false;
+                case "b": case "break":
+                    this.addBreakpoint(parseNumber(words[1]), words.length > 2 && words[2].equals("if") ? Condition.parse(words, 3) : null);
+                    this.out.printf("Breakpoint at 0x%03X%n", parseNumber(words[1]));
+                    return false;
+                case "w": case "watch":
+                    this.addWatchpoint(parseNumber(words[1]), words.length > 2 ? parseNumber(words[2]) : 1);
+                    return false;
+                case "when":
+                    this.addCondition(Condition.parse(words, 1));
+                    return false;
+                case "d": case "delete": this.delete(words); return false;
+                case "r": case "regs": this.printRegisters(); return false;
+                case "bt": case "stack": this.printStack(); return false;
+                case "x": case "mem": this.printMemory(parseNumber(words[1]), words.length > 2 ? parseNumber(words[2]) : 16); return false;
+                case "l": case "list": this.printListing(words.length > 1 ? parseNumber(words[1]) : this.cpu.getPc(), words.length > 2 ? parseNumber(words[2]) : 8); return false;
+                case "info": this.printInfo(); return false;
+                default:
+                    this.out.println("Commands: continue, step, next, finish, pause, break <addr> [if <reg> <op> <value>], watch <addr> [length],"
+                            + " when <reg> <op> <value>, delete <addr>|all, regs, stack, mem <addr> [length], list [addr] [count], info");
+                    return false;
+            }
+        }
+        catch(RuntimeException e)
+        {
+            this.out.println("Bad command: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void delete(String[] words)
+    {
+        if(words[1].equals("all"))
+        {
+            this.breakpoints.clear();
+            this.watchpoints.clear();
+            this.conditions.clear();
+        }
+        else
+        {
+            int address = parseNumber(words[1]);
+            this.breakpoints.remove(address);
+            this.watchpoints.removeIf(watch -> watch[0] == address);
+        }
+        this.install();
+    }
+
+    private void printRegisters()
+    {
+        int[] registers = this.cpu.getRegisters();
+        StringBuilder line = new StringBuilder();
+        for(int i = 0; i < 16; i++)
+        {
+            line.append(String.format("V%X=%02X ", i, registers[i]));
+        }
+        this.out.println(line);
+        this.out.printf("PC=%03X I=%03X SP=%d DT=%d ST=%d cycles=%d%n", this.cpu.getPc(), this.cpu.getI(), this.cpu.getSp(),
+                this.cpu.delayTimer, this.cpu.soundTimer, this.cpu.getCycles());
+    }
+
+    // Lists the return addresses on the stack, innermost call first, with the call that pushed each one
+    private void printStack()
+    {
+        int[] stack = this.cpu.getStack();
+        if(this.cpu.getSp() == 0)
+        {
+            this.out.println("Stack is empty");
+        }
+        for(int i = this.cpu.getSp(); i > 0; i--) // CALL pre-increments, so entries are 1 to sp
+        {
+            int call = stack[i] - 2;
+            this.out.printf("#%d  returns to 0x%03X, called at 0x%03X  %s%n", this.cpu.getSp() - i, stack[i], call, this.disassemble(call));
+        }
+    }
+
+    private void printMemory(int address, int length)
+    {
+        byte[] memory = this.cpu.getMemory();
+        for(int row = address; row < address + length; row += 16)
+        {
+            StringBuilder line = new StringBuilder(String.format("0x%03X ", row));
+            for(int a = row; a < Math.min(row + 16, address + length) && a < memory.length; a++)
+            {
+                line.append(String.format(" %02X", memory[a] & 0xFF));
+            }
+            this.out.println(line);
+        }
+    }
+
+    private void printListing(int address, int count)
+    {
+        for(int i = 0; i < count && address + 1 < this.cpu.getMemory().length; i++)
+        {
+            Instruction instruction = Disassembler.decode(this.cpu.getMemory(), address, this.cpu.getVariant());
+            this.out.printf("%s0x%03X  %04X  %s%n", address == this.cpu.getPc() ? "=> " : "   ", address, instruction.getOpcode(), instruction);
+            address = instruction.getNext();
+        }
+    }
+
+    private void printInfo()
+    {
+        for(Map.Entry<Integer, Condition> breakpoint : this.breakpoints.entrySet())
+        {
+            this.out.printf("break 0x%03X%s%n", breakpoint.getKey(), breakpoint.getValue() == null ? "" : " if " + breakpoint.getValue());
+        }
+        for(int[] watch : this.watchpoints)
+        {
+            this.out.printf("watch 0x%03X-0x%03X%n", watch[0], watch[1] - 1);
+        }
+        for(Condition condition : this.conditions)
+        {
+            this.out.println("when " + condition);
+        }
+    }
+
+    private String disassemble(int address)
+    {
+        return address >= 0 && address + 1 < this.cpu.getMemory().length ? Disassembler.decode(this.cpu.getMemory(), address, this.cpu.getVariant()).toString() : "";
+    }
+
+    private int opcodeAt(int address)
+    {
+        return Disassembler.word(this.cpu.getMemory(), address);
+    }
+
+    // Reads 0x2A0, 2A0h, #2A0 or plain decimal
+    static int parseNumber(String text)
+    {
+        if(text.startsWith("0x") || text.startsWith("0X"))
+        {
+            return Integer.parseInt(text.substring(2), 16);
+        }
+        if(text.startsWith("#"))
+        {
+            return Integer.parseInt(text.substring(1), 16);
+        }
+        if(text.endsWith("h"))
+        {
+            return Integer.parseInt(text.substring(0, text.length() - 1), 16);
+        }
+        return Integer.parseInt(text);
+    }
+}
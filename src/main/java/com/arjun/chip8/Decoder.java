@@ -0,0 +1,203 @@
+package com.arjun.chip8;
+
+// Resolves every one of the 65536 opcodes to an operation once, so executing an opcode is a single table lookup
+public final class Decoder {
+    // Operation ids, kept dense so the switch in CPU.execute compiles to a jump table
+    public static final int NOP = 0; // 0nnn and unknown opcodes
+    public static final int CLS = 1; // 00E0
+    public static final int RET = 2; // 00EE
+    public static final int JP = 3; // 1nnn
+    public static final int CALL = 4; // 2nnn
+    public static final int SE_VX_NN = 5; // 3xnn
+    public static final int SNE_VX_NN = 6; // 4xnn
+    public static final int SE_VX_VY = 7; // 5xy0
+    public static final int LD_VX_NN = 8; // 6xnn
+    public static final int ADD_VX_NN = 9; // 7xnn
+    public static final int LD_VX_VY = 10; // 8xy0
+    public static final int OR = 11; // 8xy1
+    public static final int AND = 12; // 8xy2
+    public static final int XOR = 13; // 8xy3
+    public static final int ADD_VX_VY = 14; // 8xy4
+    public static final int SUB = 15; // 8xy5
+    public static final int SHR = 16; // 8xy6
+    public static final int SUBN = 17; // 8xy7
+    public static final int SHL = 18; // 8xyE
+    public static final int SNE_VX_VY = 19; // 9xy0
+    public static final int LD_I = 20; // Annn
+    public static final int JP_V0 = 21; // Bnnn
+    public static final int RND = 22; // Cxnn
+    public static final int DRW = 23; // Dxyn
+    public static final int SKP = 24; // Ex9E
+    public static final int SKNP = 25; // ExA1
+    public static final int LD_VX_DT = 26; // Fx07
+    public static final int LD_VX_K = 27; // Fx0A
+    public static final int LD_DT_VX = 28; // Fx15
+    public static final int LD_ST_VX = 29; // Fx18
+    public static final int ADD_I_VX = 30; // Fx1E
+    public static final int LD_F_VX = 31; // Fx29
+    public static final int LD_B_VX = 32; // Fx33
+    public static final int LD_I_VX = 33; // Fx55
+    public static final int LD_VX_I = 34; // Fx65
+    // SUPER-CHIP
+    public static final int SCD = 35; // 00Cn
+    public static final int SCR = 36; // 00FB
+    public static final int SCL = 37; // 00FC
+    public static final int EXIT = 38; // 00FD
+    public static final int LOW = 39; // 00FE
+    public static final int HIGH = 40; // 00FF
+    public static final int LD_HF_VX = 41; // Fx30
+    public static final int LD_R_VX = 42; // Fx75
+    public static final int LD_VX_R = 43; // Fx85
+    // XO-CHIP
+    public static final int SCU = 44; // 00Dn
+    public static final int SAVE_RANGE = 45; // 5xy2
+    public static final int LOAD_RANGE = 46; // 5xy3
+    public static final int LD_I_LONG = 47; // F000 nnnn, the only four byte instruction
+    public static final int PLANE = 48; // Fn01
+    public static final int AUDIO = 49; // F002
+    public static final int PITCH = 50; // Fx3A
+
+    // Names of each operation, indexed by operation id
+    public static final String[] NAMES = {
+            "0nnn", "00E0", "00EE", "1nnn", "2nnn", "3xnn", "4xnn", "5xy0", "6xnn", "7xnn",
+            "8xy0", "8xy1", "8xy2", "8xy3", "8xy4", "8xy5", "8xy6", "8xy7", "8xyE", "9xy0",
+            "Annn", "Bnnn", "Cxnn", "Dxyn", "Ex9E", "ExA1", "Fx07", "Fx0A", "Fx15", "Fx18",
+            "Fx1E", "Fx29", "Fx33", "Fx55", "Fx65", "00Cn", "00FB", "00FC", "00FD", "00FE",
+            "00FF", "Fx30", "Fx75", "Fx85", "00Dn", "5xy2", "5xy3", "F000", "Fn01", "F002",
+            "Fx3A"
+    };
+
+    private static final byte[] TABLE = buildTable(Variant.CHIP8);
+    private static final byte[] SCHIP_TABLE = buildTable(Variant.SCHIP);
+    private static final byte[] XOCHIP_TABLE = buildTable(Variant.XOCHIP);
+
+    private Decoder()
+    {
+    }
+
+    // Returns the operation id of a CHIP-8 opcode
+    public static int decode(int opcode)
+    {
+        return TABLE[opcode & 0xFFFF];
+    }
+
+    // The decode table of a variant, opcodes a variant does not have decode the way plain CHIP-8 does
+    static byte[] table(Variant variant)
+    {
+        switch(variant)
+        {
+            case SCHIP: return SCHIP_TABLE;
+            case XOCHIP: return XOCHIP_TABLE;
+            default: return TABLE;
+        }
+    }
+
+    private static byte[] buildTable(Variant variant)
+    {
+        byte[] table = new byte[0x10000];
+        for(int opcode = 0; opcode < table.length; opcode++)
+        {
+            int op = variant == Variant.CHIP8 ? NOP : resolveSuper(opcode);
+            if(op == NOP && variant == Variant.XOCHIP)
+            {
+                op = resolveXO(opcode);
+            }
+            table[opcode] = (byte) (op == NOP ? resolve(opcode) : op);
+        }
+        return table;
+    }
+
+    // SUPER-CHIP opcodes, NOP for the ones it shares with CHIP-8
+    private static int resolveSuper(int opcode)
+    {
+        if((opcode & 0xFFF0) == 0x00C0) return SCD;
+        switch(opcode)
+        {
+            case 0x00FB: return SCR;
+            case 0x00FC: return SCL;
+            case 0x00FD: return EXIT;
+            case 0x00FE: return LOW;
+            case 0x00FF: return HIGH;
+        }
+        if((opcode & 0xF000) != 0xF000) return NOP;
+        switch(opcode & 0x00FF)
+        {
+            case 0x30: return LD_HF_VX;
+            case 0x75: return LD_R_VX;
+            case 0x85: return LD_VX_R;
+            default: return NOP;
+        }
+    }
+
+    // XO-CHIP opcodes on top of SUPER-CHIP
+    private static int resolveXO(int opcode)
+    {
+        if((opcode & 0xFFF0) == 0x00D0) return SCU;
+        if((opcode & 0xF00F) == 0x5002) return SAVE_RANGE;
+        if((opcode & 0xF00F) == 0x5003) return LOAD_RANGE;
+        if(opcode == 0xF000) return LD_I_LONG;
+        if(opcode == 0xF002) return AUDIO;
+        if((opcode & 0xF0FF) == 0xF001) return PLANE;
+        if((opcode & 0xF0FF) == 0xF03A) return PITCH;
+        return NOP;
+    }
+
+    // Works out the CHIP-8 operation of a single opcode, only used while building the tables
+    private static int resolve(int opcode)
+    {
+        switch(opcode & 0xF000)
+        {
+            case 0x0000:
+                if(opcode == 0x00E0) return CLS;
+                if(opcode == 0x00EE) return RET;
+                return NOP;
+            case 0x1000: return JP;
+            case 0x2000: return CALL;
+            case 0x3000: return SE_VX_NN;
+            case 0x4000: return SNE_VX_NN;
+            case 0x5000: return SE_VX_VY;
+            case 0x6000: return LD_VX_NN;
+            case 0x7000: return ADD_VX_NN;
+            case 0x8000:
+                switch(opcode & 0x000F)
+                {
+                    case 0x0: return LD_VX_VY;
+                    case 0x1: return OR;
+                    case 0x2: return AND;
+                    case 0x3: return XOR;
+                    case 0x4: return ADD_VX_VY;
+                    case 0x5: return SUB;
+                    case 0x6: return SHR;
+                    case 0x7: return SUBN;
+                    case 0xE: return SHL;
+                    default: return NOP;
+                }
+            case 0x9000: return (opcode & 0x000F) == 0 ? SNE_VX_VY : NOP;
+            case 0xA000: return LD_I;
+            case 0xB000: return JP_V0;
+            case 0xC000: return RND;
+            case 0xD000: return DRW;
+            case 0xE000:
+                switch(opcode & 0x00FF)
+                {
+                    case 0x9E: return SKP;
+                    case 0xA1: return SKNP;
+                    default: return NOP;
+                }
+            default:
+                switch(opcode & 0x00FF)
+                {
+                    case 0x07: return LD_VX_DT;
+                    case 0x0A: return LD_VX_K;
+                    case 0x15: return LD_DT_VX;
+                    case 0x18: return LD_ST_VX;
+                    case 0x1E: return ADD_I_VX;
+                    case 0x29: return LD_F_VX;
+                    case 0x33: return LD_B_VX;
+                    case 0x55: return LD_I_VX;
+                    case 0x65: return LD_VX_I;
+                    default: return NOP;
+                }
+        }
+    }
+}
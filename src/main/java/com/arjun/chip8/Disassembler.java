@@ -0,0 +1,109 @@
+package com.arjun.chip8;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Turns opcodes into Instruction objects, using the same decode tables as the CPU so both agree on what every opcode is
+public final class Disassembler {
+    private static final Instruction.Operand[] REGISTERS = {
+            Instruction.Operand.V0, Instruction.Operand.V1, Instruction.Operand.V2, Instruction.Operand.V3,
+            Instruction.Operand.V4, Instruction.Operand.V5, Instruction.Operand.V6, Instruction.Operand.V7,
+            Instruction.Operand.V8, Instruction.Operand.V9, Instruction.Operand.VA, Instruction.Operand.VB,
+            Instruction.Operand.VC, Instruction.Operand.VD, Instruction.Operand.VE, Instruction.Operand.VF
+    };
+
+    private Disassembler()
+    {
+    }
+
+    // Decodes the instruction at address, reading the second word of F000 nnnn when the variant has it
+    public static Instruction decode(byte[] memory, int address, Variant variant)
+    {
+        int opcode = word(memory, address);
+        int op = Decoder.table(variant)[opcode] & 0xFF;
+        Instruction.Operand x = REGISTERS[(opcode & 0x0F00) >>> 8];
+        Instruction.Operand y = REGISTERS[(opcode & 0x00F0) >>> 4];
+        int n = opcode & 0x000F;
+        int nn = opcode & 0x00FF;
+        int nnn = opcode & 0x0FFF;
+        Instruction instruction;
+        switch(op)
+        {
+            case Decoder.CLS: instruction = new Instruction(Instruction.Instructions.CLS); break;
+            case Decoder.RET: instruction = new Instruction(Instruction.Instructions.RET); break;
+            case Decoder.JP: instruction = new Instruction(Instruction.Instructions.JP, nnn); break;
+            case Decoder.CALL: instruction = new Instruction(Instruction.Instructions.CALL, nnn); break;
+            case Decoder.SE_VX_NN: instruction = new Instruction(Instruction.Instructions.SE, x, nn); break;
+            case Decoder.SNE_VX_NN: instruction = new Instruction(Instruction.Instructions.SNE, x, nn); break;
+            case Decoder.SE_VX_VY: instruction = new Instruction(Instruction.Instructions.SE, x, y); break;
+            case Decoder.LD_VX_NN: instruction = new Instruction(Instruction.Instructions.LD, x, nn); break;
+            case Decoder.ADD_VX_NN: instruction = new Instruction(Instruction.Instructions.ADD, x, nn); break;
+            case Decoder.LD_VX_VY: instruction = new Instruction(Instruction.Instructions.LD, x, y); break;
+            case Decoder.OR: instruction = new Instruction(Instruction.Instructions.OR, x, y); break;
+            case Decoder.AND: instruction = new Instruction(Instruction.Instructions.AND, x, y); break;
+            case Decoder.XOR: instruction = new Instruction(Instruction.Instructions.XOR, x, y); break;
+            case Decoder.ADD_VX_VY: instruction = new Instruction(Instruction.Instructions.ADD, x, y); break;
+            case Decoder.SUB: instruction = new Instruction(Instruction.Instructions.SUB, x, y); break;
+            case Decoder.SHR: instruction = new Instruction(Instruction.Instructions.SHR, x, y); break;
+            case Decoder.SUBN: instruction = new Instruction(Instruction.Instructions.SUBN, x, y); break;
+            case Decoder.SHL: instruction = new Instruction(Instruction.Instructions.SHL, x, y); break;
+            case Decoder.SNE_VX_VY: instruction = new Instruction(Instruction.Instructions.SNE, x, y); break;
+            case Decoder.LD_I: instruction = new Instruction(Instruction.Instructions.LD, Instruction.Operand.I, nnn); break;
+            case Decoder.JP_V0: instruction = new Instruction(Instruction.Instructions.JP, variant.jumpUsesVx ? x : Instruction.Operand.V0, nnn); break;
+            case Decoder.RND: instruction = new Instruction(Instruction.Instructions.RND, x, nn); break;
+            case Decoder.DRW: instruction = new Instruction(Instruction.Instructions.DRW, x, y, n); break;
+            case Decoder.SKP: instruction = new Instruction(Instruction.Instructions.SKP, x, null); break;
+            case Decoder.SKNP: instruction = new Instruction(Instruction.Instructions.SKNP, x, null); break;
+            case Decoder.LD_VX_DT: instruction = new Instruction(Instruction.Instructions.LD, x, Instruction.Operand.DT); break;
+            case Decoder.LD_VX_K: instruction = new Instruction(Instruction.Instructions.LD, x, Instruction.Operand.K); break;
+            case Decoder.LD_DT_VX: instruction = new Instruction(Instruction.Instructions.LD, Instruction.Operand.DT, x); break;
+            case Decoder.LD_ST_VX: instruction = new Instruction(Instruction.Instructions.LD, Instruction.Operand.ST, x); break;
+            case Decoder.ADD_I_VX: instruction = new Instruction(Instruction.Instructions.ADD, Instruction.Operand.I, x); break;
+            case Decoder.LD_F_VX: instruction = new Instruction(Instruction.Instructions.LD, Instruction.Operand.F, x); break;
+            case Decoder.LD_B_VX: instruction = new Instruction(Instruction.Instructions.LD, Instruction.Operand.B, x); break;
+            case Decoder.LD_I_VX: instruction = new Instruction(Instruction.Instructions.LD, Instruction.Operand.I_ARRAY, x); break;
+            case Decoder.LD_VX_I: instruction = new Instruction(Instruction.Instructions.LD, x, Instruction.Operand.I_ARRAY); break;
+            case Decoder.SCD: instruction = new Instruction(Instruction.Instructions.SCD, n); break;
+            case Decoder.SCR: instruction = new Instruction(Instruction.Instructions.SCR); break;
+            case Decoder.SCL: instruction = new Instruction(Instruction.Instructions.SCL); break;
+            case Decoder.EXIT: instruction = new Instruction(Instruction.Instructions.EXIT); break;
+            case Decoder.LOW: instruction = new Instruction(Instruction.Instructions.LOW); break;
+            case Decoder.HIGH: instruction = new Instruction(Instruction.Instructions.HIGH); break;
+            case Decoder.LD_HF_VX: instruction = new Instruction(Instruction.Instructions.LD, Instruction.Operand.HF, x); break;
+            case Decoder.LD_R_VX: instruction = new Instruction(Instruction.Instructions.LD, Instruction.Operand.R, x); break;
+            case Decoder.LD_VX_R: instruction = new Instruction(Instruction.Instructions.LD, x, Instruction.Operand.R); break;
+            case Decoder.SCU: instruction = new Instruction(Instruction.Instructions.SCU, n); break;
+            case Decoder.SAVE_RANGE: instruction = new Instruction(Instruction.Instructions.SAVE, x, y); break;
+            case Decoder.LOAD_RANGE: instruction = new Instruction(Instruction.Instructions.LOAD, x, y); break;
+            case Decoder.LD_I_LONG:
+                instruction = new Instruction(Instruction.Instructions.LD, Instruction.Operand.I, word(memory, address + 2));
+                return instruction.at(address, opcode, op, 4);
+            case Decoder.PLANE: instruction = new Instruction(Instruction.Instructions.PLANE, (opcode & 0x0F00) >>> 8); break;
+            case Decoder.AUDIO: instruction = new Instruction(Instruction.Instructions.AUDIO); break;
+            case Decoder.PITCH: instruction = new Instruction(Instruction.Instructions.PITCH, x, null); break;
+            default: instruction = new Instruction(Instruction.Instructions.SYS, nnn); break; // 0nnn and anything unknown, which the CPU ignores
+        }
+        return instruction.at(address, opcode, op, 2);
+    }
+
+    // Decodes every word from start to end in a straight line, data included, for a plain listing
+    public static List<Instruction> sweep(byte[] memory, int start, int end, Variant variant)
+    {
+        List<Instruction> instructions = new ArrayList<>();
+        for(int address = start; address + 1 < end; )
+        {
+            Instruction instruction = decode(memory, address, variant);
+            instructions.add(instruction);
+            address = instruction.getNext();
+        }
+        return instructions;
+    }
+
+    // Reads a big endian word, reading zeros past the end of memory
+    static int word(byte[] memory, int address)
+    {
+        int high = address < memory.length ? memory[address] & 0xFF : 0;
+        int low = address + 1 < memory.length ? memory[address + 1] & 0xFF : 0;
+        return high << 8 | low;
+    }
+}
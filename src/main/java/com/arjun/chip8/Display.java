@@ -1,35 +1,304 @@
 package com.arjun.chip8;
 
-import javax.swing.*;
 import java.util.Arrays;
 
 public class Display {
 
-    private final byte [][] display;
+    private final long[] display; // Each row is packed into longs, the leftmost pixel is the highest bit, one plane after another
     public static final int ROWS = 32;
     public static final int COLS = 64;
 
+    private static final short[] DOUBLED = buildDoubled(); // Each bit of a byte repeated twice, for lo-res sprites on a hi-res display
+
+    private final int rows;
+    private final int cols;
+    private final int wordsPerRow;
+    private final int planes; // Bitplanes, XO-CHIP has two and shows each combination of them as a different colour
+    private final int planeSize; // Words in one plane
+    private final boolean clipping; // Sprites are cut off at the right and bottom edges instead of wrapping around
+
+    private long dirtyRows; // Bit n is set when row n changed since the last frame was presented
+
     public Display()
     {
-        this.display = new byte[ROWS][COLS];
+        this(ROWS, COLS);
+    }
+
+    public Display(int rows, int cols)
+    {
+        this(rows, cols, 1, false);
+    }
+
+    public Display(int rows, int cols, int planes, boolean clipping)
+    {
+        if(cols % 64 != 0 || rows > 64)
+        {
+            throw new IllegalArgumentException("Display must be at most 64 rows and a multiple of 64 wide: " + rows + "x" + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.wordsPerRow = cols / 64;
+        this.planes = planes;
+        this.planeSize = rows * this.wordsPerRow;
+        this.clipping = clipping;
+        this.display = new long[planes * this.planeSize];
+    }
+
+    public int getRows()
+    {
+        return this.rows;
+    }
+
+    public int getCols()
+    {
+        return this.cols;
+    }
+
+    public int getPlanes()
+    {
+        return this.planes;
     }
 
     public byte getPixel(int row, int col)
     {
-        return this.display[row % 32][col % 64];
+        col = col % this.cols;
+        long word = this.display[(row % this.rows) * this.wordsPerRow + (col >>> 6)];
+        return (byte) ((word >>> (63 - (col & 63))) & 1);
     }
 
     public void setPixel(int row, int col, byte value)
     {
-        this.display[row % 32][col % 64] = value;
+        col = col % this.cols;
+        int index = (row % this.rows) * this.wordsPerRow + (col >>> 6);
+        long bit = 1L << (63 - (col & 63));
+        this.display[index] = value == 0 ? this.display[index] & ~bit : this.display[index] | bit;
+        this.dirtyRows |= 1L << (row % this.rows);
+    }
+
+    // Returns 64 pixels of a row starting at column word * 64
+    public long getWord(int row, int word)
+    {
+        return this.display[row * this.wordsPerRow + word];
+    }
+
+    public long getWord(int plane, int row, int word)
+    {
+        return this.display[plane * this.planeSize + row * this.wordsPerRow + word];
+    }
+
+    // XORs up to 64 sprite pixels onto a row, wrapping around the edges, returns true if a lit pixel was turned off
+    public boolean drawSpriteRow(int row, int col, long bits, int width)
+    {
+        return this.drawSpriteRow(0, row, col, bits, width);
+    }
+
+    // XORs up to 64 sprite pixels onto a row of one plane. Rows past the bottom and pixels past the right edge
+    // wrap around, or are dropped when the display clips
+    public boolean drawSpriteRow(int plane, int row, int col, long bits, int width)
+    {
+        if(row >= this.rows)
+        {
+            if(this.clipping)
+            {
+                return false;
+            }
+            row = row % this.rows;
+        }
+        this.dirtyRows |= 1L << row;
+        int base = plane * this.planeSize + row * this.wordsPerRow;
+        col = col % this.cols;
+        long sprite = bits << (64 - width); // Moves the sprite's first pixel to the highest bit
+        if(this.wordsPerRow == 1)
+        {
+            return this.xor(base, this.clipping ? sprite >>> col : Long.rotateRight(sprite, col)); // The whole row is one word, so wrapping is a rotate
+        }
+        int word = col >>> 6;
+        int shift = col & 63;
+        boolean collision = this.xor(base + word, sprite >>> shift);
+        if(shift != 0 && (word + 1 < this.wordsPerRow || !this.clipping))
+        {
+            collision |= this.xor(base + (word + 1) % this.wordsPerRow, sprite << (64 - shift)); // Spills into the next word
+        }
+        return collision;
+    }
+
+    private boolean xor(int index, long mask)
+    {
+        long word = this.display[index];
+        this.display[index] = word ^ mask;
+        return (word & mask) != 0;
+    }
+
+    // Repeats every bit of a sprite row twice, so width pixels become 2 * width hi-res pixels
+    public static long doubleBits(int bits, int width)
+    {
+        long doubled = 0;
+        for(int shift = width - 8; shift >= 0; shift -= 8)
+        {
+            doubled = (doubled << 16) | DOUBLED[(bits >>> shift) & 0xFF] & 0xFFFF;
+        }
+        return doubled;
+    }
+
+    private static short[] buildDoubled()
+    {
+        short[] doubled = new short[256];
+        for(int b = 0; b < 256; b++)
+        {
+            int spread = 0;
+            for(int bit = 0; bit < 8; bit++)
+            {
+                spread |= ((b >>> bit) & 1) * (3 << (2 * bit));
+            }
+            doubled[b] = (short) spread;
+        }
+        return doubled;
     }
 
     public void clearDisplay()
     {
-        for(int i =0; i < this.display.length; i++)
+        Arrays.fill(this.display, 0L);
+        this.markAllDirty();
+    }
+
+    // Clears the planes whose bit is set in planeMask
+    public void clearPlanes(int planeMask)
+    {
+        for(int plane = 0; plane < this.planes; plane++)
+        {
+            if((planeMask & (1 << plane)) != 0)
+            {
+                Arrays.fill(this.display, plane * this.planeSize, (plane + 1) * this.planeSize, 0L);
+            }
+        }
+        this.markAllDirty();
+    }
+
+    // Moves the selected planes down by n rows, whole rows at a time, and blanks the rows uncovered at the top
+    public void scrollDown(int n, int planeMask)
+    {
+        n = Math.min(n, this.rows);
+        for(int plane = 0; plane < this.planes; plane++)
+        {
+            if((planeMask & (1 << plane)) != 0)
+            {
+                int base = plane * this.planeSize;
+                System.arraycopy(this.display, base, this.display, base + n * this.wordsPerRow, (this.rows - n) * this.wordsPerRow);
+                Arrays.fill(this.display, base, base + n * this.wordsPerRow, 0L);
+            }
+        }
+        this.markAllDirty();
+    }
+
+    public void scrollUp(int n, int planeMask)
+    {
+        n = Math.min(n, this.rows);
+        for(int plane = 0; plane < this.planes; plane++)
+        {
+            if((planeMask & (1 << plane)) != 0)
+            {
+                int base = plane * this.planeSize;
+                System.arraycopy(this.display, base + n * this.wordsPerRow, this.display, base, (this.rows - n) * this.wordsPerRow);
+                Arrays.fill(this.display, base + (this.rows - n) * this.wordsPerRow, base + this.planeSize, 0L);
+            }
+        }
+        this.markAllDirty();
+    }
+
+    // Moves the selected planes right by n < 64 pixels, shifting whole words and carrying bits into the next word
+    public void scrollRight(int n, int planeMask)
+    {
+        if(n <= 0)
+        {
+            return; // A shift by 64 - 0 would shift by nothing in Java
+        }
+        for(int plane = 0; plane < this.planes; plane++)
+        {
+            if((planeMask & (1 << plane)) == 0)
+            {
+                continue;
+            }
+            for(int row = plane * this.planeSize; row < (plane + 1) * this.planeSize; row += this.wordsPerRow)
+            {
+                for(int word = this.wordsPerRow - 1; word > 0; word--)
+                {
+                    this.display[row + word] = (this.display[row + word] >>> n) | (this.display[row + word - 1] << (64 - n));
+                }
+                this.display[row] >>>= n;
+            }
+        }
+        this.markAllDirty();
+    }
+
+    public void scrollLeft(int n, int planeMask)
+    {
+        if(n <= 0)
+        {
+            return; // A shift by 64 - 0 would shift by nothing in Java
+        }
+        for(int plane = 0; plane < this.planes; plane++)
         {
-            Arrays.fill(this.display[i], (byte) 0);
+            if((planeMask & (1 << plane)) == 0)
+            {
+                continue;
+            }
+            for(int row = plane * this.planeSize; row < (plane + 1) * this.planeSize; row += this.wordsPerRow)
+            {
+                for(int word = 0; word < this.wordsPerRow - 1; word++)
+                {
+                    this.display[row + word] = (this.display[row + word] << n) | (this.display[row + word + 1] >>> (64 - n));
+                }
+                this.display[row + this.wordsPerRow - 1] <<= n;
+            }
         }
+        this.markAllDirty();
+    }
+
+    // FNV-1a hash of every pixel, used to check replays frame by frame
+    public long hash()
+    {
+        long hash = 0xCBF29CE484222325L;
+        for(long word : this.display)
+        {
+            hash = (hash ^ word) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // Returns a copy of the packed pixels of every plane, used for snapshots
+    public long[] copyPixels()
+    {
+        return this.display.clone();
+    }
+
+    // Replaces every pixel with packed pixels from copyPixels and marks the whole display as changed
+    public void restorePixels(int rows, int cols, long[] pixels)
+    {
+        if(rows != this.rows || cols != this.cols || pixels.length != this.display.length)
+        {
+            throw new IllegalArgumentException("Expected a " + this.rows + "x" + this.cols + " display with " + this.planes + " planes but got " + rows + "x" + cols);
+        }
+        System.arraycopy(pixels, 0, this.display, 0, this.display.length);
+        this.markAllDirty();
+    }
+
+    // The packed pixels themselves, used to move a display in and out of a MachineStore without copying through a new array
+    long[] getPixels()
+    {
+        return this.display;
+    }
+
+    void markAllDirty()
+    {
+        this.dirtyRows = -1L >>> (64 - this.rows);
+    }
+
+    // Returns the rows changed since the last call and marks them clean
+    public long takeDirtyRows()
+    {
+        long dirty = this.dirtyRows;
+        this.dirtyRows = 0;
+        return dirty;
     }
 
 }
@@ -0,0 +1,323 @@
+package com.arjun.chip8;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Streams the displays of many sessions to viewers over TCP and takes their key presses back, all on one selector thread.
+//
+// A viewer connects and sends the id of the session it wants as a 4 byte int. The server answers with "C8RD",
+// the display rows as a byte and columns as a short, then sends frames as a 4 byte length followed by a FrameDelta.
+// Every byte the viewer sends after the id is a key event, the key in the low 4 bits and 0x10 set for a press.
+//
+// Each viewer remembers the picture it was last sent and gets the delta from it to the newest picture, so a viewer
+// that falls behind skips the frames in between instead of queueing them. Sessions are only visited when they drew
+// something, so the work per viewer follows how much the screen changes rather than the frame rate.
+public class DisplayServer implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(DisplayServer.class);
+
+    private static final int MAGIC = 0x43385244; // "C8RD"
+
+    // A connected client, only touched by the selector thread
+    static final class Viewer {
+        private final SocketChannel channel;
+        private final ByteBuffer in;
+        private RemoteSession session; // Null until the session id has arrived
+        private ByteBuffer out; // Data still being written, null when the socket has caught up
+        private RemoteSession.Frame sent; // Picture the viewer has been sent
+
+        Viewer(SocketChannel channel)
+        {
+            this.channel = channel;
+            this.in = ByteBuffer.allocate(256);
+        }
+    }
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Map<Integer, RemoteSession> sessions;
+    private final Queue<RemoteSession> changed; // Sessions that published a frame since the selector last looked
+    private final Thread thread;
+
+    private volatile boolean running;
+    private volatile long bytesSent; // Only written by the selector thread
+
+    public DisplayServer(InetSocketAddress address) throws IOException
+    {
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(address);
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        this.sessions = new ConcurrentHashMap<>();
+        this.changed = new ConcurrentLinkedQueue<>();
+        this.thread = new Thread(this::run, "display-server");
+        this.thread.setDaemon(true);
+    }
+
+    public int getPort() throws IOException
+    {
+        return ((InetSocketAddress) this.serverChannel.getLocalAddress()).getPort();
+    }
+
+    // Creates a session viewers can connect to, use it as the CPU's video sink and its input as the CPU's input
+    public RemoteSession addSession(int id, int rows, int cols)
+    {
+        RemoteSession session = new RemoteSession(id, rows, cols, this);
+        if(this.sessions.putIfAbsent(id, session) != null)
+        {
+            throw new IllegalArgumentException("Session " + id + " already exists");
+        }
+        return session;
+    }
+
+    public void start()
+    {
+        this.running = true;
+        this.thread.start();
+    }
+
+    // Total bytes the viewers' sockets have taken
+    public long getBytesSent()
+    {
+        return this.bytesSent;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.running = false;
+        this.selector.wakeup();
+        try
+        {
+            this.thread.join();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        for(SelectionKey key : this.selector.keys())
+        {
+            key.channel().close();
+        }
+        this.selector.close();
+    }
+
+    // Called on the emulation thread when a session publishes a frame while not already queued
+    void schedule(RemoteSession session)
+    {
+        this.changed.add(session);
+        this.selector.wakeup();
+    }
+
+    private void run()
+    {
+        while(this.running)
+        {
+            try
+            {
+                this.selector.select();
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while(keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    this.handle(key);
+                }
+                RemoteSession session;
+                while((session = this.changed.poll()) != null)
+                {
+                    session.unschedule();
+                    this.sendFrames(session);
+                }
+            }
+            catch(IOException e)
+            {
+                LOG.error("Display server stopped", e);
+                return;
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException
+    {
+        if(!key.isValid())
+        {
+            return;
+        }
+        if(key.isAcceptable())
+        {
+            SocketChannel channel = this.serverChannel.accept();
+            if(channel != null)
+            {
+                channel.configureBlocking(false);
+                channel.register(this.selector, SelectionKey.OP_READ, new Viewer(channel));
+            }
+            return;
+        }
+        Viewer viewer = (Viewer) key.attachment();
+        try
+        {
+            if(key.isReadable())
+            {
+                this.read(viewer, key);
+            }
+            if(key.isValid() && key.isWritable())
+            {
+                this.flush(viewer, key);
+                if(viewer.out == null && viewer.session != null)
+                {
+                    this.sendFrame(viewer, key, viewer.session.getLatest(), null, null); // Caught up, send what it missed
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            this.disconnect(viewer, key); // One viewer going away never stops the others
+        }
+    }
+
+    private void read(Viewer viewer, SelectionKey key) throws IOException
+    {
+        if(viewer.channel.read(viewer.in) < 0)
+        {
+            this.disconnect(viewer, key);
+            return;
+        }
+        viewer.in.flip();
+        if(viewer.session == null)
+        {
+            if(viewer.in.remaining() < 4)
+            {
+                viewer.in.compact();
+                return;
+            }
+            int id = viewer.in.getInt();
+            RemoteSession session = this.sessions.get(id);
+            if(session == null)
+            {
+                LOG.warn("Viewer asked for unknown session {}", id);
+                this.disconnect(viewer, key);
+                return;
+            }
+            viewer.session = session;
+            session.viewers.add(viewer);
+            ByteBuffer hello = ByteBuffer.allocate(7);
+            hello.putInt(MAGIC).put((byte) session.getRows()).putShort((short) session.getCols()).flip();
+            viewer.out = hello;
+            viewer.sent = new RemoteSession.Frame(-1, new long[session.getRows() * session.getCols() / 64]); // Blank, the first delta is the whole picture
+            this.flush(viewer, key);
+            if(viewer.out == null)
+            {
+                this.sendFrame(viewer, key, session.getLatest(), null, null);
+            }
+        }
+        while(viewer.in.hasRemaining())
+        {
+            int event = viewer.in.get();
+            if((event & KeyEventQueue.PRESSED) != 0)
+            {
+                viewer.session.getInput().press(event & 0xF);
+            }
+            else
+            {
+                viewer.session.getInput().release(event & 0xF);
+            }
+        }
+        viewer.in.clear();
+    }
+
+    // Sends the newest picture of a session to every viewer whose socket has room
+    private void sendFrames(RemoteSession session) throws IOException
+    {
+        RemoteSession.Frame frame = session.getLatest();
+        RemoteSession.Frame encodedFrom = null; // Viewers that were sent the same picture get the same bytes
+        ByteBuffer encoded = null;
+        for(int i = session.viewers.size() - 1; i >= 0; i--)
+        {
+            Viewer viewer = session.viewers.get(i);
+            if(viewer.out != null)
+            {
+                continue; // Still writing, picks up the newest picture once the socket drains
+            }
+            SelectionKey key = viewer.channel.keyFor(this.selector);
+            if(viewer.sent != encodedFrom)
+            {
+                encodedFrom = viewer.sent;
+                encoded = null;
+            }
+            encoded = this.sendFrame(viewer, key, frame, encodedFrom, encoded);
+        }
+    }
+
+    // Writes the delta from what the viewer was last sent to frame, reusing an encoding made from the same picture.
+    // Returns the encoding so other viewers can share it
+    private ByteBuffer sendFrame(Viewer viewer, SelectionKey key, RemoteSession.Frame frame, RemoteSession.Frame encodedFrom, ByteBuffer encoded) throws IOException
+    {
+        if(frame == viewer.sent || frame.sequence == viewer.sent.sequence)
+        {
+            return encoded;
+        }
+        if(encoded == null || encodedFrom != viewer.sent)
+        {
+            int wordsPerRow = viewer.session.getCols() / 64;
+            encoded = ByteBuffer.allocate(4 + FrameDelta.maxSize(frame.pixels.length));
+            encoded.position(4);
+            FrameDelta.encode(viewer.sent.pixels, frame.pixels, wordsPerRow, encoded);
+            encoded.putInt(0, encoded.position() - 4).flip();
+        }
+        viewer.out = encoded.duplicate();
+        viewer.sent = frame;
+        try
+        {
+            this.flush(viewer, key);
+        }
+        catch(IOException e)
+        {
+            this.disconnect(viewer, key);
+        }
+        return encoded;
+    }
+
+    // Writes as much pending data as the socket takes, waiting for it to become writable if some is left
+    private void flush(Viewer viewer, SelectionKey key) throws IOException
+    {
+        if(viewer.out == null)
+        {
+            return;
+        }
+        this.bytesSent += viewer.channel.write(viewer.out);
+        if(viewer.out.hasRemaining())
+        {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        else
+        {
+            viewer.out = null;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void disconnect(Viewer viewer, SelectionKey key) throws IOException
+    {
+        if(viewer.session != null)
+        {
+            viewer.session.viewers.remove(viewer);
+        }
+        key.cancel();
+        viewer.channel.close();
+    }
+}
@@ -0,0 +1,26 @@
+package com.arjun.chip8;
+
+// Runs instructions for a CPU, each CPU has its own engine since engines may cache what they learn about its memory
+public interface ExecutionEngine {
+    int run(CPU cpu, int budget); // Executes up to budget instructions and returns how many were executed
+
+    default void memoryWritten(int address, int length) // Called after the CPU writes memory so cached code can be dropped
+    {
+    }
+
+    default void preload(CPU cpu, RomImage rom) // Called after the program is loaded, engines that cache code may analyze it ahead of time
+    {
+    }
+
+    // Creates an engine from its name, used by the command line options
+    static ExecutionEngine named(String name)
+    {
+        switch(name)
+        {
+            case "interpreter": return new Interpreter();
+            case "block": return new BlockEngine();
+            case "jit": return new JitEngine();
+            default: throw new IllegalArgumentException("Unknown execution engine: " + name);
+        }
+    }
+}
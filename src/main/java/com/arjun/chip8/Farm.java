@@ -0,0 +1,160 @@
+package com.arjun.chip8;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Runs many independent CPUs at once, each on its own virtual thread
+public class Farm {
+    private static final Logger LOG = LoggerFactory.getLogger(Farm.class);
+
+    private final List<Scheduler> sessions;
+    private final int quantum; // Instructions a session runs before giving up its carrier thread
+    private final LongAdder instructions; // Instructions executed across all sessions
+
+    private volatile boolean running;
+
+    public Farm(int quantum)
+    {
+        this.sessions = new ArrayList<>();
+        this.quantum = quantum;
+        this.instructions = new LongAdder();
+    }
+
+    public void add(CPU cpu)
+    {
+        this.sessions.add(new Scheduler(cpu, this.quantum, false));
+    }
+
+    public int size()
+    {
+        return this.sessions.size();
+    }
+
+    // Runs every session for the duration and returns the number of instructions executed per second
+    public double run(Duration duration) throws InterruptedException
+    {
+        this.instructions.reset();
+        this.running = true;
+        long start = System.nanoTime();
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for(Scheduler session : this.sessions)
+            {
+                executor.submit(() -> this.runSession(session));
+            }
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+            }
+            finally
+            {
+                this.running = false; // Also when interrupted, or closing the executor would wait forever
+            }
+        } // Closing the executor waits for every session to finish its quantum
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return this.instructions.sum() / seconds;
+    }
+
+    public void stop()
+    {
+        this.running = false;
+    }
+
+    public long getInstructions()
+    {
+        return this.instructions.sum();
+    }
+
+    // Steps one session a quantum at a time until the farm is stopped
+    private void runSession(Scheduler session)
+    {
+        CPU cpu = session.getCPU();
+        while(this.running)
+        {
+            long before = cpu.getCycles();
+            try
+            {
+                session.runFrame(); // One quantum of instructions, then the timers tick
+            }
+            catch(RuntimeException e)
+            {
+                LOG.error("Session stopped after {} instructions", cpu.getCycles(), e); // A crashed ROM only ends its own session
+                return;
+            }
+            finally
+            {
+                this.instructions.add(cpu.getCycles() - before);
+            }
+            if(cpu.isWaitingForKey())
+            {
+                LockSupport.parkNanos(Scheduler.FRAME_NANOS); // Unmounts the virtual thread so a key wait never holds a carrier
+            }
+            else
+            {
+                Thread.yield(); // Lets the next session run on this carrier
+            }
+        }
+    }
+
+    // Usage: Farm <rom> [sessions] [seconds] [quantum]
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if(args.length < 1)
+        {
+            System.err.println("Usage: Farm <rom> [sessions] [seconds] [quantum]");
+            System.exit(1);
+        }
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int quantum = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        RomImage rom = RomLibrary.shared().load(args[0]); // Every session installs the same image
+
+        if(Metrics.ENABLED)
+        {
+            MetricsRegistry.get().startDump(Duration.ofSeconds(1));
+        }
+        Integer port = Integer.getInteger("chip8.serve"); // Streams every session to RemoteViewer on this port
+        DisplayServer server = null;
+        if(port != null)
+        {
+            server = new DisplayServer(new InetSocketAddress(port));
+            server.start();
+            LOG.info("Serving {} sessions on port {}", sessions, server.getPort());
+        }
+        Farm farm = new Farm(quantum);
+        for(int i = 0; i < sessions; i++)
+        {
+            CPU cpu;
+            if(server == null)
+            {
+                cpu = CPU.headless(rom.length());
+            }
+            else
+            {
+                RemoteSession session = server.addSession(i, Display.ROWS, Display.COLS);
+                cpu = new CPU(rom.length(), new Display(), session, session.getInput());
+            }
+            cpu.loadProgram(rom);
+            farm.add(cpu);
+        }
+        double ips = farm.run(Duration.ofSeconds(seconds));
+        LOG.info("{} sessions of {} ran {} instructions, {} instructions per second", sessions, args[0], farm.getInstructions(), String.format("%.0f", ips));
+        if(server != null)
+        {
+            LOG.info("Sent {} bytes to viewers", server.getBytesSent());
+            server.close();
+        }
+    }
+}
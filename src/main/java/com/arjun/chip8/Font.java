@@ -1,6 +1,8 @@
 package com.arjun.chip8;
 
 public class Font {
+    public static final int BIG_FONT_ADDRESS = 0x50; // The large font is loaded right after the small one
+
     public static final byte[] FONT = {
             (byte)0xF0, (byte)0x90, (byte)0x90,  (byte)0x90,  (byte)0xF0, // 0
             (byte)0x20, (byte)0x60,(byte)0x20, (byte)0x20,(byte)0x70, // 1
@@ -19,4 +21,24 @@ public class Font {
             (byte)0xF0, (byte)0x80, (byte)0xF0, (byte)0x80, (byte)0xF0, // E
             (byte)0xF0, (byte)0x80, (byte)0xF0, (byte)0x80, (byte)0x80  // F
     };
+
+    // SUPER-CHIP 8x10 digits, XO-CHIP adds A to F
+    public static final byte[] BIG_FONT = {
+            (byte)0xFF, (byte)0xFF, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xFF, (byte)0xFF, // 0
+            (byte)0x18, (byte)0x78, (byte)0x78, (byte)0x18, (byte)0x18, (byte)0x18, (byte)0x18, (byte)0x18, (byte)0xFF, (byte)0xFF, // 1
+            (byte)0xFF, (byte)0xFF, (byte)0x03, (byte)0x03, (byte)0xFF, (byte)0xFF, (byte)0xC0, (byte)0xC0, (byte)0xFF, (byte)0xFF, // 2
+            (byte)0xFF, (byte)0xFF, (byte)0x03, (byte)0x03, (byte)0xFF, (byte)0xFF, (byte)0x03, (byte)0x03, (byte)0xFF, (byte)0xFF, // 3
+            (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xFF, (byte)0xFF, (byte)0x03, (byte)0x03, (byte)0x03, (byte)0x03, // 4
+            (byte)0xFF, (byte)0xFF, (byte)0xC0, (byte)0xC0, (byte)0xFF, (byte)0xFF, (byte)0x03, (byte)0x03, (byte)0xFF, (byte)0xFF, // 5
+            (byte)0xFF, (byte)0xFF, (byte)0xC0, (byte)0xC0, (byte)0xFF, (byte)0xFF, (byte)0xC3, (byte)0xC3, (byte)0xFF, (byte)0xFF, // 6
+            (byte)0xFF, (byte)0xFF, (byte)0x03, (byte)0x03, (byte)0x06, (byte)0x0C, (byte)0x18, (byte)0x18, (byte)0x18, (byte)0x18, // 7
+            (byte)0xFF, (byte)0xFF, (byte)0xC3, (byte)0xC3, (byte)0xFF, (byte)0xFF, (byte)0xC3, (byte)0xC3, (byte)0xFF, (byte)0xFF, // 8
+            (byte)0xFF, (byte)0xFF, (byte)0xC3, (byte)0xC3, (byte)0xFF, (byte)0xFF, (byte)0x03, (byte)0x03, (byte)0xFF, (byte)0xFF, // 9
+            (byte)0x7E, (byte)0xFF, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xFF, (byte)0xFF, (byte)0xC3, (byte)0xC3, (byte)0xC3, // A
+            (byte)0xFC, (byte)0xFC, (byte)0xC3, (byte)0xC3, (byte)0xFC, (byte)0xFC, (byte)0xC3, (byte)0xC3, (byte)0xFC, (byte)0xFC, // B
+            (byte)0x3C, (byte)0xFF, (byte)0xC3, (byte)0xC0, (byte)0xC0, (byte)0xC0, (byte)0xC0, (byte)0xC3, (byte)0xFF, (byte)0x3C, // C
+            (byte)0xFC, (byte)0xFE, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xFE, (byte)0xFC, // D
+            (byte)0xFF, (byte)0xFF, (byte)0xC0, (byte)0xC0, (byte)0xFF, (byte)0xFF, (byte)0xC0, (byte)0xC0, (byte)0xFF, (byte)0xFF, // E
+            (byte)0xFF, (byte)0xFF, (byte)0xC0, (byte)0xC0, (byte)0xFF, (byte)0xFF, (byte)0xC0, (byte)0xC0, (byte)0xC0, (byte)0xC0  // F
+    };
 }
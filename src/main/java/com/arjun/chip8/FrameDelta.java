@@ -0,0 +1,125 @@
+package com.arjun.chip8;
+
+import java.nio.ByteBuffer;
+
+// Encodes the change between two pictures as a mask of the rows that changed followed by those rows XORed
+// with their old pixels and run length coded. Unchanged pixels XOR to zero, so the size follows how much changed.
+// A control byte with the high bit set is a run of (c & 0x7F) + 1 zero bytes, otherwise c + 1 literal bytes follow.
+public final class FrameDelta {
+    private static final int MAX_RUN = 128;
+
+    private FrameDelta()
+    {
+    }
+
+    // Largest encoded size for a picture of this many words, the row mask included. The worst case is changed and
+    // unchanged bytes taking turns: every pair costs a literal control byte, the literal and a zero run control byte
+    public static int maxSize(int words)
+    {
+        int bytes = words * 8;
+        return 8 + (3 * bytes + 1) / 2;
+    }
+
+    // Writes the rows of current that differ from previous into out, returns the row mask, zero when nothing changed
+    public static long encode(long[] previous, long[] current, int wordsPerRow, ByteBuffer out)
+    {
+        int rows = current.length / wordsPerRow;
+        long rowMask = 0;
+        for(int row = 0; row < rows; row++)
+        {
+            for(int word = row * wordsPerRow; word < (row + 1) * wordsPerRow; word++)
+            {
+                if(previous[word] != current[word])
+                {
+                    rowMask |= 1L << row;
+                    break;
+                }
+            }
+        }
+        out.putLong(rowMask);
+        int literalStart = -1; // Position of the control byte of the literal run being written
+        int zeros = 0;
+        for(long rest = rowMask; rest != 0; rest &= rest - 1)
+        {
+            int row = Long.numberOfTrailingZeros(rest);
+            for(int word = row * wordsPerRow; word < (row + 1) * wordsPerRow; word++)
+            {
+                long xor = previous[word] ^ current[word];
+                for(int shift = 56; shift >= 0; shift -= 8)
+                {
+                    byte b = (byte) (xor >>> shift);
+                    if(b == 0)
+                    {
+                        literalStart = -1;
+                        if(++zeros == MAX_RUN)
+                        {
+                            out.put((byte) (0x80 | (MAX_RUN - 1)));
+                            zeros = 0;
+                        }
+                        continue;
+                    }
+                    if(zeros > 0)
+                    {
+                        out.put((byte) (0x80 | (zeros - 1)));
+                        zeros = 0;
+                    }
+                    if(literalStart < 0 || out.get(literalStart) == MAX_RUN - 1)
+                    {
+                        literalStart = out.position();
+                        out.put((byte) -1); // Counts up to 0 as the first literal is written
+                    }
+                    out.put(literalStart, (byte) (out.get(literalStart) + 1));
+                    out.put(b);
+                }
+            }
+        }
+        if(zeros > 0)
+        {
+            out.put((byte) (0x80 | (zeros - 1)));
+        }
+        return rowMask;
+    }
+
+    // XORs an encoded delta onto pixels, reading the row mask and the runs that follow it from in
+    public static long apply(ByteBuffer in, long[] pixels, int wordsPerRow)
+    {
+        long rowMask = in.getLong();
+        int zeros = 0;
+        int literals = 0;
+        for(long rest = rowMask; rest != 0; rest &= rest - 1)
+        {
+            int row = Long.numberOfTrailingZeros(rest);
+            for(int word = row * wordsPerRow; word < (row + 1) * wordsPerRow; word++)
+            {
+                long xor = 0;
+                for(int i = 0; i < 8; i++)
+                {
+                    if(zeros == 0 && literals == 0)
+                    {
+                        int control = in.get() & 0xFF;
+                        if(control >= 0x80)
+                        {
+                            zeros = control - 0x7F;
+                        }
+                        else
+                        {
+                            literals = control + 1;
+                        }
+                    }
+                    xor <<= 8;
+                    if(zeros > 0)
+                    {
+                        zeros--;
+                    }
+                    else
+                    {
+                        xor |= in.get() & 0xFF;
+                        literals--;
+                    }
+                }
+                pixels[word] ^= xor;
+            }
+        }
+        return rowMask;
+    }
+}
@@ -0,0 +1,6 @@
+package com.arjun.chip8;
+
+// Told by the scheduler when each frame has finished
+public interface FrameListener {
+    void frameEnded(CPU cpu, long frame);
+}
@@ -0,0 +1,110 @@
+package com.arjun.chip8;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Lock-free histogram of positive values, with 16 linear buckets in every power of two so any value is within about 6%
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong total;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+
+    public Histogram()
+    {
+        this.counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+        this.total = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    public void record(long value)
+    {
+        if(value < 0)
+        {
+            value = 0;
+        }
+        this.counts.incrementAndGet(bucket(value));
+        this.total.incrementAndGet();
+        this.sum.addAndGet(value);
+        long current;
+        while(value > (current = this.max.get()) && !this.max.compareAndSet(current, value))
+        {
+            Thread.onSpinWait();
+        }
+    }
+
+    public long getCount()
+    {
+        return this.total.get();
+    }
+
+    public long getMax()
+    {
+        return this.max.get();
+    }
+
+    public double getMean()
+    {
+        long count = this.total.get();
+        return count == 0 ? 0 : (double) this.sum.get() / count;
+    }
+
+    // Returns the upper bound of the bucket holding the given percentile, between 0 and 100
+    public long getPercentile(double percentile)
+    {
+        long count = this.total.get();
+        if(count == 0)
+        {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for(int i = 0; i < this.counts.length(); i++)
+        {
+            seen += this.counts.get(i);
+            if(seen >= target)
+            {
+                return Math.min(upperBound(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    public void reset()
+    {
+        for(int i = 0; i < this.counts.length(); i++)
+        {
+            this.counts.set(i, 0);
+        }
+        this.total.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+
+    // Values below SUB_BUCKETS get a bucket each, above that the top SUB_BUCKET_BITS + 1 bits pick the bucket
+    private static int bucket(long value)
+    {
+        if(value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS; // How far the value is shifted
+        int sub = (int) (value >>> magnitude) - SUB_BUCKETS; // Next SUB_BUCKET_BITS bits below the top one
+        return (magnitude + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket)
+    {
+        if(bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int magnitude = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << magnitude) - 1;
+    }
+}
@@ -0,0 +1,160 @@
+package com.arjun.chip8;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hosts many sessions packed into a MachineStore, running them a quantum at a time on one pooled CPU per worker.
+// Unlike Farm, which keeps a whole CPU on the heap for every session, a stored session costs one slot of off-heap memory.
+public class Host {
+    private static final Logger LOG = LoggerFactory.getLogger(Host.class);
+
+    private final MachineStore store;
+    private final int quantum; // Instructions a session runs each time it is loaded
+    private final int workers;
+    private final LongAdder instructions; // Instructions executed across all sessions
+
+    private int sessions; // Slots in use, filled from slot 0
+    private volatile boolean running;
+
+    public Host(MachineStore store, int quantum, int workers)
+    {
+        this.store = store;
+        this.quantum = quantum;
+        this.workers = workers;
+        this.instructions = new LongAdder();
+    }
+
+    // Boots count new sessions of a ROM, each with its own random seed
+    public void add(RomImage rom, int count)
+    {
+        if(this.sessions + count > this.store.capacity())
+        {
+            throw new IllegalStateException("Store has room for " + (this.store.capacity() - this.sessions) + " more sessions, not " + count);
+        }
+        CPU cpu = CPU.headless(rom.length());
+        cpu.loadProgram(rom);
+        for(int i = 0; i < count; i++)
+        {
+            cpu.setSeed(this.sessions);
+            this.store.save(this.sessions++, cpu);
+        }
+    }
+
+    public int size()
+    {
+        return this.sessions;
+    }
+
+    public MachineStore getStore()
+    {
+        return this.store;
+    }
+
+    // Runs every session for the duration and returns the number of instructions executed per second
+    public double run(Duration duration) throws InterruptedException
+    {
+        this.instructions.reset();
+        this.running = true;
+        long start = System.nanoTime();
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for(int worker = 0; worker < this.workers; worker++)
+            {
+                int first = worker;
+                executor.submit(() -> this.runWorker(first));
+            }
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+            }
+            finally
+            {
+                this.running = false; // Also when interrupted, or closing the executor would wait forever
+            }
+        } // Closing the executor waits for every worker to save the session it is running
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return this.instructions.sum() / seconds;
+    }
+
+    public void stop()
+    {
+        this.running = false;
+    }
+
+    public long getInstructions()
+    {
+        return this.instructions.sum();
+    }
+
+    // Each worker owns every workers-th slot starting at first, so no two workers ever touch the same slot
+    private void runWorker(int first)
+    {
+        CPU cpu = CPU.headless(MachineStore.MEMORY_SIZE - RomImage.LOAD_ADDRESS);
+        Scheduler scheduler = new Scheduler(cpu, this.quantum, false);
+        BitSet crashed = new BitSet(); // Only ever touched by this worker
+        while(this.running)
+        {
+            boolean ran = false;
+            for(int slot = first; slot < this.sessions && this.running; slot += this.workers)
+            {
+                if(crashed.get(slot) || this.store.isWaitingForKey(slot))
+                {
+                    continue; // Hosted sessions have no keyboard, a session waiting for a key never needs loading again
+                }
+                ran = true;
+                this.store.load(slot, cpu);
+                long before = cpu.getCycles();
+                try
+                {
+                    scheduler.runFrame();
+                }
+                catch(RuntimeException e)
+                {
+                    LOG.error("Session {} stopped after {} instructions", slot, cpu.getCycles(), e);
+                    crashed.set(slot); // A crashed ROM only ends its own session
+                    continue;
+                }
+                this.instructions.add(cpu.getCycles() - before);
+                this.store.save(slot, cpu);
+            }
+            if(!ran)
+            {
+                return; // Every slot this worker owns has crashed or waits for a key, none of them can run again
+            }
+        }
+    }
+
+    // Usage: Host <rom> [sessions] [seconds] [quantum]
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if(args.length < 1)
+        {
+            System.err.println("Usage: Host <rom> [sessions] [seconds] [quantum]");
+            System.exit(1);
+        }
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int quantum = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        RomImage rom = RomLibrary.shared().load(args[0]);
+
+        try(MachineStore store = new MachineStore(sessions))
+        {
+            Host host = new Host(store, quantum, Runtime.getRuntime().availableProcessors());
+            host.add(rom, sessions);
+            Runtime runtime = Runtime.getRuntime();
+            runtime.gc();
+            LOG.info("{} sessions stored in {} KB off heap, {} KB of heap in use", sessions, store.byteSize() / 1024, (runtime.totalMemory() - runtime.freeMemory()) / 1024);
+            double ips = host.run(Duration.ofSeconds(seconds));
+            LOG.info("{} sessions of {} ran {} instructions, {} instructions per second", sessions, args[0], host.getInstructions(), String.format("%.0f", ips));
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.arjun.chip8;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// A recorded session: the seed, every change of key state tagged with the instruction count it happened at,
+// and display hashes at checkpoint frames so a replay can prove it reached the same screens
+public final class InputMovie {
+    private static final int MAGIC = 0x43384D56; // "C8MV"
+    private static final int VERSION = 2; // Only this version is read, version 1 was never released
+
+    private final long seed;
+    private final long romChecksum;
+    private final int instructionsPerFrame;
+    private final Variant variant;
+
+    private long[] keyChanges; // Instruction count in the high 48 bits and key mask in the low 16 bits
+    private int keyChangeCount;
+    private long[] checkpoints; // Pairs of frame number and display hash
+    private int checkpointCount;
+
+    public InputMovie(long seed, long romChecksum, int instructionsPerFrame)
+    {
+        this(seed, romChecksum, instructionsPerFrame, Variant.CHIP8);
+    }
+
+    public InputMovie(long seed, long romChecksum, int instructionsPerFrame, Variant variant)
+    {
+        this.variant = variant;
+        this.seed = seed;
+        this.romChecksum = romChecksum;
+        this.instructionsPerFrame = instructionsPerFrame;
+        this.keyChanges = new long[64];
+        this.checkpoints = new long[64];
+    }
+
+    public static long checksum(byte[] rom)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(rom);
+        return crc.getValue();
+    }
+
+    public long getSeed()
+    {
+        return this.seed;
+    }
+
+    public long getRomChecksum()
+    {
+        return this.romChecksum;
+    }
+
+    public int getInstructionsPerFrame()
+    {
+        return this.instructionsPerFrame;
+    }
+
+    public Variant getVariant()
+    {
+        return this.variant;
+    }
+
+    public void addKeyChange(long cycle, int mask)
+    {
+        if(this.keyChangeCount == this.keyChanges.length)
+        {
+            this.keyChanges = Arrays.copyOf(this.keyChanges, this.keyChanges.length * 2);
+        }
+        this.keyChanges[this.keyChangeCount++] = (cycle << 16) | (mask & 0xFFFF);
+    }
+
+    public int getKeyChangeCount()
+    {
+        return this.keyChangeCount;
+    }
+
+    public long getKeyChangeCycle(int index)
+    {
+        return this.keyChanges[index] >>> 16;
+    }
+
+    public int getKeyChangeMask(int index)
+    {
+        return (int) (this.keyChanges[index] & 0xFFFF);
+    }
+
+    public void addCheckpoint(long frame, long displayHash)
+    {
+        if(this.checkpointCount * 2 == this.checkpoints.length)
+        {
+            this.checkpoints = Arrays.copyOf(this.checkpoints, this.checkpoints.length * 2);
+        }
+        this.checkpoints[this.checkpointCount * 2] = frame;
+        this.checkpoints[this.checkpointCount * 2 + 1] = displayHash;
+        this.checkpointCount++;
+    }
+
+    public int getCheckpointCount()
+    {
+        return this.checkpointCount;
+    }
+
+    public long getCheckpointFrame(int index)
+    {
+        return this.checkpoints[index * 2];
+    }
+
+    public long getCheckpointHash(int index)
+    {
+        return this.checkpoints[index * 2 + 1];
+    }
+
+    // Writes the movie, instruction counts and frames are stored as deltas in variable length so idle stretches cost a few bytes
+    public void writeTo(OutputStream outputStream) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(this.seed);
+        out.writeLong(this.romChecksum);
+        out.writeInt(this.instructionsPerFrame);
+        out.writeByte(this.variant.ordinal());
+        writeVarLong(out, this.keyChangeCount);
+        long previous = 0;
+        for(int i = 0; i < this.keyChangeCount; i++)
+        {
+            writeVarLong(out, this.getKeyChangeCycle(i) - previous);
+            out.writeShort(this.getKeyChangeMask(i));
+            previous = this.getKeyChangeCycle(i);
+        }
+        writeVarLong(out, this.checkpointCount);
+        previous = 0;
+        for(int i = 0; i < this.checkpointCount; i++)
+        {
+            writeVarLong(out, this.getCheckpointFrame(i) - previous);
+            out.writeLong(this.getCheckpointHash(i));
+            previous = this.getCheckpointFrame(i);
+        }
+        out.flush();
+    }
+
+    public static InputMovie readFrom(InputStream inputStream) throws IOException
+    {
+        DataInputStream in = new DataInputStream(inputStream);
+        if(in.readInt() != MAGIC)
+        {
+            throw new IOException("Not a chip 8 input movie");
+        }
+        int version = in.readUnsignedByte();
+        if(version != VERSION)
+        {
+            throw new IOException("Unsupported input movie version " + version);
+        }
+        long seed = in.readLong();
+        long romChecksum = in.readLong();
+        int instructionsPerFrame = in.readInt();
+        int variant = in.readUnsignedByte();
+        if(variant >= Variant.values().length)
+        {
+            throw new IOException("Unknown variant " + variant);
+        }
+        InputMovie movie = new InputMovie(seed, romChecksum, instructionsPerFrame, Variant.values()[variant]);
+        long count = readVarLong(in);
+        long cycle = 0;
+        for(long i = 0; i < count; i++)
+        {
+            cycle += readVarLong(in);
+            movie.addKeyChange(cycle, in.readUnsignedShort());
+        }
+        count = readVarLong(in);
+        long frame = 0;
+        for(long i = 0; i < count; i++)
+        {
+            frame += readVarLong(in);
+            movie.addCheckpoint(frame, in.readLong());
+        }
+        return movie;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException
+    {
+        while((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException
+    {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in input movie");
+    }
+}
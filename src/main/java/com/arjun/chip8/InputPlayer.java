@@ -0,0 +1,40 @@
+package com.arjun.chip8;
+
+// Plays the key changes of a movie back, applying each one at the start of the frame it was recorded in
+public class InputPlayer implements InputSource {
+    private final InputMovie movie;
+    private int next; // Index of the next key change to apply
+    private int mask;
+
+    public InputPlayer(InputMovie movie)
+    {
+        this.movie = movie;
+    }
+
+    @Override
+    public void frameStarted(long cycle)
+    {
+        while(this.next < this.movie.getKeyChangeCount() && this.movie.getKeyChangeCycle(this.next) <= cycle)
+        {
+            this.mask = this.movie.getKeyChangeMask(this.next++);
+        }
+    }
+
+    @Override
+    public boolean isKeyPressed(int key)
+    {
+        return (this.mask & (1 << (key & 0xF))) != 0;
+    }
+
+    @Override
+    public int pressedKey()
+    {
+        return this.mask == 0 ? -1 : Integer.numberOfTrailingZeros(this.mask);
+    }
+
+    @Override
+    public int keyMask()
+    {
+        return this.mask;
+    }
+}
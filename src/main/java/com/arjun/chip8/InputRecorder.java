@@ -0,0 +1,68 @@
+package com.arjun.chip8;
+
+// Records a live input source into a movie. Keys are latched at the start of each frame so
+// the CPU sees exactly what was recorded, and the display is hashed every checkpointInterval frames
+public class InputRecorder implements InputSource, FrameListener {
+    private final InputSource live;
+    private final InputMovie movie;
+    private final int checkpointInterval;
+
+    private int mask; // Key state for the current frame
+
+    public InputRecorder(InputSource live, InputMovie movie, int checkpointInterval)
+    {
+        this.live = live;
+        this.movie = movie;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public InputMovie getMovie()
+    {
+        return this.movie;
+    }
+
+    @Override
+    public void frameStarted(long cycle)
+    {
+        this.live.frameStarted(cycle);
+        int current = this.live.keyMask();
+        if(current != this.mask)
+        {
+            this.mask = current;
+            this.movie.addKeyChange(cycle, current);
+        }
+    }
+
+    @Override
+    public void frameEnded(CPU cpu, long frame)
+    {
+        if(frame % this.checkpointInterval == 0)
+        {
+            this.movie.addCheckpoint(frame, cpu.getDisplay().hash());
+        }
+    }
+
+    @Override
+    public boolean awaitKey(long nanos)
+    {
+        return this.live.awaitKey(nanos);
+    }
+
+    @Override
+    public boolean isKeyPressed(int key)
+    {
+        return (this.mask & (1 << (key & 0xF))) != 0;
+    }
+
+    @Override
+    public int pressedKey()
+    {
+        return this.mask == 0 ? -1 : Integer.numberOfTrailingZeros(this.mask);
+    }
+
+    @Override
+    public int keyMask()
+    {
+        return this.mask;
+    }
+}
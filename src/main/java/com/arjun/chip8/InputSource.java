@@ -0,0 +1,30 @@
+package com.arjun.chip8;
+
+// Supplies the state of the 16 key hex keypad to the CPU
+public interface InputSource {
+    boolean isKeyPressed(int key); // Checks if the key is currently held down
+
+    int pressedKey(); // Returns the lowest key that is held down or -1 if none are
+
+    default int keyMask() // Bit n is set when key n is held down
+    {
+        int mask = 0;
+        for(int key = 0; key < 16; key++)
+        {
+            if(this.isKeyPressed(key))
+            {
+                mask |= 1 << key;
+            }
+        }
+        return mask;
+    }
+
+    default void frameStarted(long cycle) // Called by the scheduler before each frame runs, cycle is the CPU's instruction count
+    {
+    }
+
+    default boolean awaitKey(long nanos) // Blocks until a key is pressed or the timeout passes, sources that cannot block return false at once
+    {
+        return false;
+    }
+}
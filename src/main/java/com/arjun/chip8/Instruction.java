@@ -3,17 +3,23 @@ package com.arjun.chip8;
 public class Instruction {
 
         public enum Instructions {
-            CLS, RET, SYS, JP, CALL, SE, SNE, LD, ADD, XOR, SUB, SHR, SUBN, SHL, DRW, SKP, SKNP, RND, RTS, OR
+            CLS, RET, SYS, JP, CALL, SE, SNE, LD, ADD, XOR, SUB, SHR, SUBN, SHL, DRW, SKP, SKNP, RND, RTS, OR, AND,
+            SCD, SCR, SCL, EXIT, LOW, HIGH, SCU, SAVE, LOAD, PLANE, AUDIO, PITCH
         }
 
         public enum Operand {
-            V0,V1,V2,V3,V4,V5,V6,V7,V8,V9,VA,VB,VC,VD,VE,VF,F,B,I,ST,DT,I_ARRAY
+            V0,V1,V2,V3,V4,V5,V6,V7,V8,V9,VA,VB,VC,VD,VE,VF,F,B,I,ST,DT,I_ARRAY,K,HF,R
         }
 
         private Instructions instructions;
         private Operand op1,op2;
         private int value;
 
+        private int address = -1; // Where the instruction was decoded from, -1 when built by hand
+        private int opcode;
+        private int operation; // Decoder operation id
+        private int length = 2; // Bytes, 4 for XO-CHIP's F000 nnnn
+
         public Instruction(Instructions instructions)
         {
             this.instructions = instructions;
@@ -46,4 +52,92 @@ public class Instruction {
             this.instructions = instructions;
             this.value = value;
         }
+
+        // Records where in memory the instruction came from, used by Disassembler
+        Instruction at(int address, int opcode, int operation, int length)
+        {
+            this.address = address;
+            this.opcode = opcode;
+            this.operation = operation;
+            this.length = length;
+            return this;
+        }
+
+        public Instructions getInstructions()
+        {
+            return this.instructions;
+        }
+
+        public Operand getOp1()
+        {
+            return this.op1;
+        }
+
+        public Operand getOp2()
+        {
+            return this.op2;
+        }
+
+        public int getValue()
+        {
+            return this.value;
+        }
+
+        public int getAddress()
+        {
+            return this.address;
+        }
+
+        public int getOpcode()
+        {
+            return this.opcode;
+        }
+
+        public int getOperation()
+        {
+            return this.operation;
+        }
+
+        public int getLength()
+        {
+            return this.length;
+        }
+
+        // Address of the next instruction in memory
+        public int getNext()
+        {
+            return this.address + this.length;
+        }
+
+        // Formats the instruction in the usual assembler syntax, for example "DRW V1, V2, 0x5" or "LD [I], V3"
+        @Override
+        public String toString()
+        {
+            StringBuilder text = new StringBuilder(this.instructions.name());
+            String separator = " ";
+            for(Operand operand : new Operand[]{this.op1, this.op2})
+            {
+                if(operand != null)
+                {
+                    text.append(separator).append(operand == Operand.I_ARRAY ? "[I]" : operand.name());
+                    separator = ", ";
+                }
+            }
+            if(this.hasValue())
+            {
+                text.append(separator).append(String.format("0x%X", this.value));
+            }
+            return text.toString();
+        }
+
+        // Whether value is an operand, instructions without one leave it at 0
+        private boolean hasValue()
+        {
+            switch(this.instructions)
+            {
+                case SYS: case JP: case CALL: case RND: case DRW: case SCD: case SCU: case PLANE: return true;
+                case SE: case SNE: case ADD: case LD: return this.op2 == null; // Register and immediate forms
+                default: return false;
+            }
+        }
 }
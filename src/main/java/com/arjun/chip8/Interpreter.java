@@ -0,0 +1,18 @@
+package com.arjun.chip8;
+
+// Fetches, decodes and executes one instruction at a time
+public class Interpreter implements ExecutionEngine {
+    @Override
+    public int run(CPU cpu, int budget)
+    {
+        for(int i = 0; i < budget; i++)
+        {
+            cpu.step();
+            if(cpu.isWaitingForKey() || cpu.hasExited())
+            {
+                return i + 1;
+            }
+        }
+        return budget;
+    }
+}
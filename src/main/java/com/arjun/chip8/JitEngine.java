@@ -0,0 +1,197 @@
+package com.arjun.chip8;
+
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+
+import static com.arjun.chip8.ClassWriter.*;
+
+// Compiles hot blocks into hidden classes so HotSpot can optimize the guest code like any other Java code.
+// Blocks are cached by BlockEngine, so a write into a compiled block drops the compiled code with the block
+// and the instructions go back to being interpreted until they are hot again.
+public class JitEngine extends BlockEngine {
+    static final int HOT_THRESHOLD = 64; // Whole runs of a block before it is compiled
+
+    private static final String CPU_CLASS = "com/arjun/chip8/CPU";
+    private static final String BLOCK_CLASS = "com/arjun/chip8/CompiledBlock";
+    private static final String GENERATED_CLASS = "com/arjun/chip8/JitBlock";
+
+    // The generated run method keeps the CPU in local 1 and the register file in local 2
+    private static final int SUM_SLOT = 3; // Temporary for 8xy4
+
+    private static final int VF = 0xF;
+
+    private int compiledBlocks;
+
+    @Override
+    void runBlock(CPU cpu, Block block, int count)
+    {
+        if(count == block.ops.length)
+        {
+            if(block.compiled == null && ++block.runs == HOT_THRESHOLD)
+            {
+                block.compiled = this.compile(block);
+            }
+            if(block.compiled != null)
+            {
+                block.compiled.run(cpu);
+                int last = block.ops[block.ops.length - 1];
+                if(endsBlock(last >>> 16))
+                {
+                    cpu.execute(last >>> 16, last & 0xFFFF); // Jumps, skips, waits and writes always go through the interpreter
+                }
+                return;
+            }
+        }
+        super.runBlock(cpu, block, count);
+    }
+
+    public int getCompiledBlocks()
+    {
+        return this.compiledBlocks;
+    }
+
+    private CompiledBlock compile(Block block)
+    {
+        try
+        {
+            byte[] bytes = generate(block);
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true); // Not strong, unloaded once the block is dropped
+            CompiledBlock compiled = (CompiledBlock) lookup.lookupClass().getDeclaredConstructor().newInstance();
+            this.compiledBlocks++;
+            return compiled;
+        }
+        catch(ReflectiveOperationException | LinkageError e)
+        {
+            LoggerFactory.getLogger(JitEngine.class).warn("Could not compile block at {}, it stays interpreted", String.format("%03X", block.start), e); // Only a failure starts slf4j
+            return null;
+        }
+    }
+
+    static byte[] generate(Block block)
+    {
+        ClassWriter writer = new ClassWriter(GENERATED_CLASS, "java/lang/Object", BLOCK_CLASS);
+
+        Code init = new Code(writer)
+                .op(ALOAD_0)
+                .op(INVOKESPECIAL, writer.methodRef("java/lang/Object", "<init>", "()V"))
+                .op(RETURN);
+        writer.method(0x0001, "<init>", "()V", init, 1, 1);
+
+        Code run = new Code(writer);
+        run.op(ALOAD_1).op(GETFIELD, writer.fieldRef(CPU_CLASS, "registers", "[I")).op(ASTORE_2);
+        int length = block.ops.length;
+        if(endsBlock(block.ops[length - 1] >>> 16))
+        {
+            length--; // The last instruction is run by runBlock
+        }
+        for(int i = 0; i < length; i++)
+        {
+            emit(writer, run, block.ops[i] >>> 16, block.ops[i] & 0xFFFF);
+        }
+        run.op(RETURN);
+        writer.method(0x0001, "run", "(L" + CPU_CLASS + ";)V", run, 8, 4);
+        return writer.toByteArray();
+    }
+
+    // Emits bytecode that does exactly what CPU.execute does for the operation
+    private static void emit(ClassWriter writer, Code code, int op, int opcode)
+    {
+        int x = (opcode & 0x0F00) >>> 8;
+        int y = (opcode & 0x00F0) >>> 4;
+        int nn = opcode & 0x00FF;
+        int nnn = opcode & 0x0FFF;
+        switch(op)
+        {
+            case Decoder.NOP:
+                break;
+            case Decoder.LD_VX_NN: // Vx = nn
+                code.op(ALOAD_2).push(x).push(nn).op(IASTORE);
+                break;
+            case Decoder.ADD_VX_NN: // Vx = (Vx + nn) & 0xFF
+                code.op(ALOAD_2).push(x);
+                register(code, x).push(nn).op(IADD).push(0xFF).op(IAND);
+                code.op(IASTORE);
+                break;
+            case Decoder.LD_VX_VY: // Vx = Vy
+                code.op(ALOAD_2).push(x);
+                register(code, y);
+                code.op(IASTORE);
+                break;
+            case Decoder.OR:
+            case Decoder.AND:
+            case Decoder.XOR: // Vx = Vx op Vy
+                code.op(ALOAD_2).push(x);
+                register(code, x);
+                register(code, y);
+                code.op(op == Decoder.OR ? IOR : op == Decoder.AND ? IAND : IXOR).op(IASTORE);
+                break;
+            case Decoder.ADD_VX_VY: // sum = Vx + Vy, VF = sum > 0xFF, Vx = sum & 0xFF
+                register(code, x);
+                register(code, y);
+                code.op(IADD).local(ISTORE, SUM_SLOT);
+                code.op(ALOAD_2).push(VF).local(ILOAD, SUM_SLOT).push(8).op(IUSHR).op(IASTORE);
+                code.op(ALOAD_2).push(x).local(ILOAD, SUM_SLOT).push(0xFF).op(IAND).op(IASTORE);
+                break;
+            case Decoder.SUB: // VF = Vx > Vy, Vx = (Vx - Vy) & 0xFF
+                code.op(ALOAD_2).push(VF);
+                register(code, y);
+                register(code, x);
+                code.op(ISUB).push(31).op(IUSHR).op(IASTORE); // Registers hold 0..255, so the sign of Vy - Vx is Vx > Vy
+                code.op(ALOAD_2).push(x);
+                register(code, x);
+                register(code, y);
+                code.op(ISUB).push(0xFF).op(IAND).op(IASTORE);
+                break;
+            case Decoder.SHR: // VF = Vx & 1, Vx = Vx >> 1
+                code.op(ALOAD_2).push(VF);
+                register(code, x).push(1).op(IAND).op(IASTORE);
+                code.op(ALOAD_2).push(x);
+                register(code, x).push(1).op(ISHR).op(IASTORE);
+                break;
+            case Decoder.SUBN: // VF = Vy > Vx, Vx = (Vy - Vx) & 0xFF
+                code.op(ALOAD_2).push(VF);
+                register(code, x);
+                register(code, y);
+                code.op(ISUB).push(31).op(IUSHR).op(IASTORE);
+                code.op(ALOAD_2).push(x);
+                register(code, y);
+                register(code, x);
+                code.op(ISUB).push(0xFF).op(IAND).op(IASTORE);
+                break;
+            case Decoder.SHL: // VF = Vx >>> 7 & 1, Vx = (Vx << 1) & 0xFF
+                code.op(ALOAD_2).push(VF);
+                register(code, x).push(7).op(IUSHR).push(1).op(IAND).op(IASTORE);
+                code.op(ALOAD_2).push(x);
+                register(code, x).push(1).op(ISHL).push(0xFF).op(IAND).op(IASTORE);
+                break;
+            case Decoder.LD_I: // I = nnn
+                code.op(ALOAD_1).push(nnn).op(PUTFIELD, writer.fieldRef(CPU_CLASS, "I", "I"));
+                break;
+            case Decoder.ADD_I_VX: // I = I + Vx
+                code.op(ALOAD_1).op(ALOAD_1).op(GETFIELD, writer.fieldRef(CPU_CLASS, "I", "I"));
+                register(code, x).op(IADD).op(PUTFIELD, writer.fieldRef(CPU_CLASS, "I", "I"));
+                break;
+            case Decoder.LD_F_VX: // I = Vx * 5
+                code.op(ALOAD_1);
+                register(code, x).push(5).op(IMUL).op(PUTFIELD, writer.fieldRef(CPU_CLASS, "I", "I"));
+                break;
+            case Decoder.LD_VX_DT: // Vx = delay timer
+                code.op(ALOAD_2).push(x).op(ALOAD_1).op(GETFIELD, writer.fieldRef(CPU_CLASS, "delayTimer", "I")).op(IASTORE);
+                break;
+            case Decoder.LD_DT_VX: // Delay timer = Vx
+                code.op(ALOAD_1);
+                register(code, x).op(PUTFIELD, writer.fieldRef(CPU_CLASS, "delayTimer", "I"));
+                break;
+            default: // Drawing, random numbers, memory reads and sound call back into the interpreter
+                code.op(ALOAD_1).push(op).push(opcode).op(INVOKEVIRTUAL, writer.methodRef(CPU_CLASS, "execute", "(II)V"));
+                break;
+        }
+    }
+
+    // Pushes the value of register index
+    private static Code register(Code code, int index)
+    {
+        return code.op(ALOAD_2).push(index).op(IALOAD);
+    }
+}
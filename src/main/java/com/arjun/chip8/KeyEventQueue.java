@@ -0,0 +1,58 @@
+package com.arjun.chip8;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded lock-free queue of key events for exactly one producer thread and one consumer thread.
+// An event is a key in the low 4 bits with PRESSED set for a press. The producer only writes tail
+// and the consumer only writes head, each published with release ordering so neither side ever locks.
+public final class KeyEventQueue {
+    public static final int PRESSED = 0x10;
+
+    private final int[] events;
+    private final int mask;
+    private final AtomicLong head; // Next event to take, only written by the consumer
+    private final AtomicLong tail; // Next free slot, only written by the producer
+
+    public KeyEventQueue(int capacity)
+    {
+        if(Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.events = new int[capacity];
+        this.mask = capacity - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+    }
+
+    // Called from the producer thread only, returns false when the queue is full
+    public boolean offer(int event)
+    {
+        long tail = this.tail.getPlain();
+        if(tail - this.head.getAcquire() == this.events.length)
+        {
+            return false;
+        }
+        this.events[(int) tail & this.mask] = event;
+        this.tail.setRelease(tail + 1); // Publishes the event written above
+        return true;
+    }
+
+    // Called from the consumer thread only, returns -1 when the queue is empty
+    public int poll()
+    {
+        long head = this.head.getPlain();
+        if(head == this.tail.getAcquire())
+        {
+            return -1;
+        }
+        int event = this.events[(int) head & this.mask];
+        this.head.setRelease(head + 1); // Hands the slot back to the producer
+        return event;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.head.getAcquire() == this.tail.getAcquire();
+    }
+}
@@ -0,0 +1,99 @@
+package com.arjun.chip8;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Input source fed with key presses and releases from another thread, such as the AWT event thread.
+// Held keys are published as an atomic 16 bit mask and every event also goes through a lock-free queue,
+// so a key tapped and released between two frames is still seen by the next frame. The CPU reads a mask
+// latched at the start of each frame, so one frame always sees one consistent set of keys.
+public class KeyInput implements InputSource {
+    private final AtomicInteger held; // Bit n is set while key n is down, written by the producer thread
+    private final KeyEventQueue events;
+
+    private volatile Thread waiter; // Thread parked in awaitKey, woken by the next press
+    private int mask; // Keys the current frame sees, only touched by the emulation thread
+
+    public KeyInput()
+    {
+        this.held = new AtomicInteger();
+        this.events = new KeyEventQueue(256);
+    }
+
+    // Called from the producer thread
+    public void press(int key)
+    {
+        int bit = 1 << (key & 0xF);
+        if((this.held.getAndUpdate(keys -> keys | bit) & bit) == 0) // Key repeat sends more presses, only the first one counts
+        {
+            this.events.offer(key & 0xF | KeyEventQueue.PRESSED); // A full queue only loses taps, held keys are still in the mask
+            Thread waiter = this.waiter;
+            if(waiter != null)
+            {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    // Called from the producer thread
+    public void release(int key)
+    {
+        int bit = 1 << (key & 0xF);
+        if((this.held.getAndUpdate(keys -> keys & ~bit) & bit) != 0)
+        {
+            this.events.offer(key & 0xF);
+        }
+    }
+
+    // Latches the keys held now plus any pressed since the last frame, even if they were already released
+    @Override
+    public void frameStarted(long cycle)
+    {
+        int pressed = 0;
+        for(int event = this.events.poll(); event >= 0; event = this.events.poll())
+        {
+            if((event & KeyEventQueue.PRESSED) != 0)
+            {
+                pressed |= 1 << (event & 0xF);
+            }
+        }
+        this.mask = this.held.get() | pressed;
+    }
+
+    // Parks the calling thread until a key is pressed or the timeout passes, returns true if a press is waiting
+    @Override
+    public boolean awaitKey(long nanos)
+    {
+        this.waiter = Thread.currentThread();
+        try
+        {
+            if(this.events.isEmpty()) // Checked after publishing the waiter, so a press in between still unparks us
+            {
+                LockSupport.parkNanos(this, nanos);
+            }
+            return !this.events.isEmpty();
+        }
+        finally
+        {
+            this.waiter = null;
+        }
+    }
+
+    @Override
+    public boolean isKeyPressed(int key)
+    {
+        return (this.mask & (1 << (key & 0xF))) != 0;
+    }
+
+    @Override
+    public int pressedKey()
+    {
+        return this.mask == 0 ? -1 : Integer.numberOfTrailingZeros(this.mask);
+    }
+
+    @Override
+    public int keyMask()
+    {
+        return this.mask;
+    }
+}
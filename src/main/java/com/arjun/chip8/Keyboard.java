@@ -2,79 +2,86 @@ package com.arjun.chip8;
 
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.HashMap;
+import java.util.Arrays;
 
-public class Keyboard extends KeyAdapter {
-    private final int[] keyboard;
-    private final Character[] allowedKeys = {'1','2','3','4',
-                                  'q','w','e','r',
-                                   'a','s','d','f',
-                                    'z','x','c','v'};
+// Maps the left side of a QWERTY keyboard onto the hex keypad
+//   1 2 3 4        1 2 3 C
+//   Q W E R   ->   4 5 6 D
+//   A S D F        7 8 9 E
+//   Z X C V        A 0 B F
+public class Keyboard extends KeyAdapter implements InputSource {
+    private static final String LAYOUT = "X123QWEASDZC4RFV"; // Key code for each keypad key, from 0 to F
+    private static final byte[] KEYS = new byte[128]; // Keypad key for each key code, -1 if it is not mapped
 
-    private final HashMap<Character, Integer> keyMappings;
+    static
+    {
+        Arrays.fill(KEYS, (byte) -1);
+        for(int key = 0; key < LAYOUT.length(); key++)
+        {
+            KEYS[LAYOUT.charAt(key)] = (byte) key; // Key codes for letters and digits are their upper case characters
+        }
+    }
+
+    private final KeyInput input;
 
     public Keyboard(){
-        this.keyboard = new int[16];
-        this.keyMappings = new HashMap<>();
-        this.keyMappings.put(this.allowedKeys[0],1);
-        this.keyMappings.put(this.allowedKeys[1],2);
-        this.keyMappings.put(this.allowedKeys[2],3);
-        this.keyMappings.put(this.allowedKeys[3],0xC);
-        this.keyMappings.put(this.allowedKeys[4],4);
-        this.keyMappings.put(this.allowedKeys[5],5);
-        this.keyMappings.put(this.allowedKeys[6],6);
-        this.keyMappings.put(this.allowedKeys[7],0xD);
-        this.keyMappings.put(this.allowedKeys[8],7);
-        this.keyMappings.put(this.allowedKeys[9],8);
-        this.keyMappings.put(this.allowedKeys[10],9);
-        this.keyMappings.put(this.allowedKeys[11],0xE);
-        this.keyMappings.put(this.allowedKeys[12],0xA);
-        this.keyMappings.put(this.allowedKeys[13],0);
-        this.keyMappings.put(this.allowedKeys[14],0xB);
-        this.keyMappings.put(this.allowedKeys[15],0xF);
+        this.input = new KeyInput();
     }
 
+    // Key codes are used instead of key chars, so shift or caps lock never leave a key stuck down
     @Override
     public void keyPressed(KeyEvent e)
     {
-        super.keyPressed(e);
-        char charKeyPressed = e.getKeyChar();
-        boolean isValid = this.isValidKey(charKeyPressed);
-        if(isValid)
+        int key = toKey(e.getKeyCode());
+        if(key >= 0)
         {
-            int keyboardIndex = this.keyMappings.get(charKeyPressed);
-            this.keyboard[keyboardIndex] = 1;
+            this.input.press(key);
         }
     }
 
     @Override
     public void keyReleased(KeyEvent e)
     {
-        super.keyReleased(e);
-        char charKeyPressed = e.getKeyChar();
-        boolean isValid = this.isValidKey(charKeyPressed);
-        if(isValid)
+        int key = toKey(e.getKeyCode());
+        if(key >= 0)
         {
-            int keyboardIndex = this.keyMappings.get(charKeyPressed);
-            this.keyboard[keyboardIndex] = 0;
+            this.input.release(key);
         }
     }
 
-    private boolean isValidKey(char key)
+    private static int toKey(int keyCode)
     {
-        for(char c: this.allowedKeys)
-        {
-            if(c == key)
-            {
-                return true;
-            }
-        }
-        return false;
+        return keyCode >= 0 && keyCode < KEYS.length ? KEYS[keyCode] : -1;
+    }
+
+    @Override
+    public void frameStarted(long cycle)
+    {
+        this.input.frameStarted(cycle);
+    }
+
+    @Override
+    public boolean awaitKey(long nanos)
+    {
+        return this.input.awaitKey(nanos);
+    }
+
+    @Override
+    public boolean isKeyPressed(int key)
+    {
+        return this.input.isKeyPressed(key);
+    }
+
+    @Override
+    public int pressedKey()
+    {
+        return this.input.pressedKey();
     }
 
-    public int[] getKeyboard()
+    @Override
+    public int keyMask()
     {
-        return this.keyboard;
+        return this.input.keyMask();
     }
 
 }
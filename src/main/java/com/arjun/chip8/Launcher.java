@@ -0,0 +1,124 @@
+package com.arjun.chip8;
+
+import java.io.IOException;
+
+// Command line front end for Main, parses the options and hands them over.
+//
+// Every option defaults to the system property Main used to read, so -Dchip8.ipf=20 still works and a flag overrides it.
+// Nothing here touches Swing, AWT or slf4j, the window and the sound device are only set up once Main knows they were asked for.
+public final class Launcher {
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: Launcher [options] <rom>",
+            "  --mode window|headless   Opens a window, or runs without one and prints the final state (default window)",
+            "  --speed <n>              Instructions per frame, at 60 frames a second (default 10)",
+            "  --unthrottled            Runs frames as fast as possible instead of at 60 a second",
+            "  --frames <n>             Stops after n frames",
+            "  --variant <name>         chip8, schip or xochip",
+            "  --engine <name>          interpreter, block or jit",
+            "  --audio <name>           line, none or a .wav file to record to (default line in a window, none headless)",
+            "  --seed <n>               Seed for the random number instruction",
+            "  --record <file>          Records the session to an input movie for Replayer",
+            "  --debug                  Stops before the first instruction and takes debugger commands from the console");
+
+    String rom; // A file path, or the name of a ROM on the classpath
+    boolean windowed = true;
+    int instructionsPerFrame = Integer.getInteger("chip8.ipf", 10); // 600 instructions per second by default
+    boolean throttled = !Boolean.getBoolean("chip8.unthrottled");
+    long frames = Long.MAX_VALUE;
+    Variant variant = Variant.named(System.getProperty("chip8.variant", "chip8"));
+    String engine = System.getProperty("chip8.engine", "interpreter");
+    String audio = System.getProperty("chip8.audio"); // Null until parse picks the default for the mode
+    long seed = Long.getLong("chip8.seed", System.nanoTime());
+    String recordFile = System.getProperty("chip8.record");
+    boolean debug = Boolean.getBoolean("chip8.debug");
+
+    // Throws IllegalArgumentException with a message for the user when the arguments make no sense
+    static Launcher parse(String[] args)
+    {
+        Launcher options = new Launcher();
+        for(int i = 0; i < args.length; i++)
+        {
+            String arg = args[i];
+            switch(arg)
+            {
+                case "--mode": options.windowed = mode(value(args, ++i, arg)); break;
+                case "--speed": options.instructionsPerFrame = positive(value(args, ++i, arg), arg); break;
+                case "--unthrottled": options.throttled = false; break;
+                case "--frames": options.frames = positive(value(args, ++i, arg), arg); break;
+                case "--variant": options.variant = Variant.named(value(args, ++i, arg)); break;
+                case "--engine": options.engine = value(args, ++i, arg); break;
+                case "--audio": options.audio = value(args, ++i, arg); break;
+                case "--seed": options.seed = Long.decode(value(args, ++i, arg)); break;
+                case "--record": options.recordFile = value(args, ++i, arg); break;
+                case "--debug": options.debug = true; break;
+                default:
+                    if(arg.startsWith("--"))
+                    {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    if(options.rom != null)
+                    {
+                        throw new IllegalArgumentException("Only one ROM can be run, got " + options.rom + " and " + arg);
+                    }
+                    options.rom = arg;
+            }
+        }
+        if(options.rom == null)
+        {
+            throw new IllegalArgumentException("No ROM given");
+        }
+        if(options.audio == null)
+        {
+            options.audio = options.windowed ? "line" : "none"; // A headless session never loads javax.sound or holds a device
+        }
+        ExecutionEngine.named(options.engine); // Fails here rather than after the window is already open
+        AudioSink.checkName(options.audio);
+        return options;
+    }
+
+    private static String value(String[] args, int i, String option)
+    {
+        if(i >= args.length)
+        {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[i];
+    }
+
+    private static boolean mode(String mode)
+    {
+        switch(mode)
+        {
+            case "window": return true;
+            case "headless": return false;
+            default: throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    private static int positive(String value, String option)
+    {
+        int n = Integer.parseInt(value);
+        if(n <= 0)
+        {
+            throw new IllegalArgumentException(option + " must be positive: " + n);
+        }
+        return n;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Launcher options;
+        try
+        {
+            options = parse(args);
+        }
+        catch(IllegalArgumentException e) // NumberFormatException included
+        {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+        Main.run(options);
+    }
+}
@@ -0,0 +1,43 @@
+package com.arjun.chip8;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.io.IOException;
+
+// Plays samples on the default sound device
+public class LineAudio implements AudioSink {
+    private static final int BUFFER_FRAMES = 2; // Frames of sound the device buffers, more survives hiccups but adds latency
+
+    private final SourceDataLine line;
+
+    public LineAudio() throws IOException
+    {
+        AudioFormat format = new AudioFormat(Audio.SAMPLE_RATE, 8, 1, true, false);
+        try
+        {
+            this.line = AudioSystem.getSourceDataLine(format);
+            this.line.open(format, BUFFER_FRAMES * Audio.SAMPLES_PER_FRAME);
+        }
+        catch(LineUnavailableException | IllegalArgumentException e)
+        {
+            throw new IOException("No sound device available", e);
+        }
+        this.line.start();
+    }
+
+    // Blocks while the device buffer is full, which is what paces the audio thread
+    @Override
+    public void write(byte[] samples, int offset, int length)
+    {
+        this.line.write(samples, offset, length);
+    }
+
+    @Override
+    public void close()
+    {
+        this.line.drain();
+        this.line.close();
+    }
+}
@@ -0,0 +1,657 @@
+package com.arjun.chip8;
+
+import java.util.Arrays;
+
+// Runs many copies of one ROM in lockstep, each lane with its own keys and random seed.
+// State is kept as struct of arrays, one array per register holding that register for every lane, so while all lanes
+// are at the same instruction it executes once as a loop over the lanes that the JIT compiles to SIMD code.
+// When lanes are at different instructions they are grouped by address and each group runs lane by lane until they meet again.
+public class MachineBatch {
+    private static final int MEMORY_SIZE = 4096;
+    private static final int MEMORY_SHIFT = 12; // Lane n's memory starts at n << MEMORY_SHIFT
+    private static final int DISPLAY_WORDS = Display.ROWS; // A 64 pixel row is one long
+
+    private final int lanes;
+    private final byte[] memory; // Every lane's 4K of memory, one after the other
+    private final int[][] registers; // registers[x][lane]
+    private final int[][] stack; // stack[depth][lane]
+    private final int[] I;
+    private final int[] pc;
+    private final int[] sp;
+    private final int[] delayTimer;
+    private final int[] soundTimer;
+    private final long[] randomState;
+    private final int[] keys; // Bit n is set while key n is held
+    private final long[] display; // DISPLAY_WORDS rows per lane
+    private final boolean[] waitingForKey; // Set by Fx0A, the lane sits out the rest of the frame like CPU.run does
+    private final boolean[] halted; // Set when a lane goes out of bounds, it never runs again
+
+    private final int[] firstAt; // First lane at each address while a divergent step groups lanes, -1 when none
+    private final int[] nextAt; // Next lane at the same address
+    private final int[] addresses; // Addresses with at least one lane, in the order they were found
+    private final int[] idle; // Lanes sitting out the step, found by sharedOpcode
+    private final int[][] saved; // The pc, Vx, VF, I and timers of each idle lane while a shared step runs
+    private int idleCount;
+
+    private int running; // Lanes neither halted nor waiting for a key this frame
+    private long steps; // Steps taken, every running lane executes one instruction per step
+    private long divergentSteps; // Steps where lanes could not share an instruction
+
+    public MachineBatch(RomImage rom, int lanes)
+    {
+        this.lanes = lanes;
+        this.memory = new byte[lanes << MEMORY_SHIFT];
+        this.registers = new int[16][lanes];
+        this.stack = new int[16][lanes];
+        this.I = new int[lanes];
+        this.pc = new int[lanes];
+        this.sp = new int[lanes];
+        this.delayTimer = new int[lanes];
+        this.soundTimer = new int[lanes];
+        this.randomState = new long[lanes];
+        this.keys = new int[lanes];
+        this.display = new long[lanes * DISPLAY_WORDS];
+        this.waitingForKey = new boolean[lanes];
+        this.halted = new boolean[lanes];
+        this.firstAt = new int[MEMORY_SIZE];
+        this.nextAt = new int[lanes];
+        this.addresses = new int[lanes];
+        this.idle = new int[lanes];
+        this.saved = new int[6][lanes];
+        Arrays.fill(this.firstAt, -1);
+
+        byte[] image = new byte[MEMORY_SIZE];
+        System.arraycopy(Font.FONT, 0, image, 0, Font.FONT.length);
+        rom.installInto(image);
+        for(int lane = 0; lane < lanes; lane++)
+        {
+            System.arraycopy(image, 0, this.memory, lane << MEMORY_SHIFT, MEMORY_SIZE);
+            this.randomState[lane] = CPU.mixSeed(lane);
+        }
+        Arrays.fill(this.pc, 0x200);
+        this.running = lanes;
+    }
+
+    public int getLanes()
+    {
+        return this.lanes;
+    }
+
+    public void setSeed(int lane, long seed)
+    {
+        this.randomState[lane] = CPU.mixSeed(seed);
+    }
+
+    // Sets the held keys of a lane as a mask, bit n for key n
+    public void setKeys(int lane, int mask)
+    {
+        this.keys[lane] = mask & 0xFFFF;
+    }
+
+    public int getPc(int lane)
+    {
+        return this.pc[lane];
+    }
+
+    public int getI(int lane)
+    {
+        return this.I[lane];
+    }
+
+    public int getRegister(int lane, int x)
+    {
+        return this.registers[x][lane];
+    }
+
+    public boolean isHalted(int lane)
+    {
+        return this.halted[lane];
+    }
+
+    public boolean isWaitingForKey(int lane)
+    {
+        return this.waitingForKey[lane];
+    }
+
+    public long getSteps()
+    {
+        return this.steps;
+    }
+
+    public long getDivergentSteps()
+    {
+        return this.divergentSteps;
+    }
+
+    public byte getMemory(int lane, int address)
+    {
+        return this.memory[(lane << MEMORY_SHIFT) + address];
+    }
+
+    // FNV-1a hash of a lane's pixels, the same value Display.hash gives for the same picture
+    public long displayHash(int lane)
+    {
+        long hash = 0xCBF29CE484222325L;
+        for(int row = 0; row < DISPLAY_WORDS; row++)
+        {
+            hash = (hash ^ this.display[lane * DISPLAY_WORDS + row]) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // Copies a lane's pixels into a display so it can be shown or compared
+    public void copyDisplay(int lane, Display target)
+    {
+        target.restorePixels(Display.ROWS, Display.COLS, Arrays.copyOfRange(this.display, lane * DISPLAY_WORDS, (lane + 1) * DISPLAY_WORDS));
+    }
+
+    // Runs one frame of instructions on every lane, then ticks the timers
+    public void runFrame(int instructions)
+    {
+        this.running = 0;
+        for(int lane = 0; lane < this.lanes; lane++)
+        {
+            this.waitingForKey[lane] = false; // Fx0A runs again with this frame's keys
+            if(!this.halted[lane])
+            {
+                this.running++;
+            }
+        }
+        for(int i = 0; i < instructions && this.running > 0; i++)
+        {
+            this.step();
+        }
+        this.tickTimers();
+    }
+
+    // Executes one instruction on every running lane
+    public void step()
+    {
+        this.steps++;
+        int common = this.sharedOpcode();
+        if(common >= 0)
+        {
+            int op = Decoder.decode((short) common);
+            if(this.idleCount == 0)
+            {
+                this.executeAll(op, common);
+            }
+            else
+            {
+                this.executeAround(op, common);
+            }
+            return;
+        }
+        this.divergentSteps++;
+        int count = 0;
+        for(int lane = 0; lane < this.lanes; lane++) // Groups the running lanes by pc, a lane is pushed onto the list for its address
+        {
+            if(this.halted[lane] || this.waitingForKey[lane])
+            {
+                continue;
+            }
+            int address = this.pc[lane];
+            if(address > MEMORY_SIZE - 2)
+            {
+                this.halt(lane);
+                continue;
+            }
+            if(this.firstAt[address] < 0)
+            {
+                this.addresses[count++] = address;
+            }
+            this.nextAt[lane] = this.firstAt[address];
+            this.firstAt[address] = lane;
+        }
+        for(int i = 0; i < count; i++) // Lanes at the same address decode once and run the same case back to back
+        {
+            int address = this.addresses[i];
+            int lane = this.firstAt[address];
+            this.firstAt[address] = -1;
+            int shared = this.fetch(lane, address);
+            int op = Decoder.decode((short) shared);
+            while(lane >= 0)
+            {
+                int opcode = this.fetch(lane, address);
+                this.pc[lane] = address + 2;
+                this.executeLane(lane, opcode == shared ? op : Decoder.decode((short) opcode), opcode);
+                lane = this.nextAt[lane];
+            }
+        }
+    }
+
+    public void tickTimers()
+    {
+        for(int lane = 0; lane < this.lanes; lane++)
+        {
+            this.delayTimer[lane] = Math.max(this.delayTimer[lane] - 1, 0);
+            this.soundTimer[lane] = Math.max(this.soundTimer[lane] - 1, 0);
+        }
+    }
+
+    // Returns the opcode every running lane is about to execute, or -1 when they are at different instructions.
+    // Halted lanes and lanes waiting for a key do not count, they are listed in idle instead
+    private int sharedOpcode()
+    {
+        this.idleCount = 0;
+        int first = -1;
+        int address = -1;
+        for(int lane = 0; lane < this.lanes; lane++)
+        {
+            if(this.halted[lane] || this.waitingForKey[lane])
+            {
+                this.idle[this.idleCount++] = lane;
+            }
+            else if(first < 0)
+            {
+                first = lane;
+                address = this.pc[lane];
+            }
+            else if(this.pc[lane] != address)
+            {
+                return -1;
+            }
+        }
+        if(first < 0 || address > MEMORY_SIZE - 2)
+        {
+            return -1; // Left to the divergent step, which halts the lanes
+        }
+        int base = (first << MEMORY_SHIFT) + address;
+        byte high = this.memory[base];
+        byte low = this.memory[base + 1];
+        for(int lane = first + 1; lane < this.lanes; lane++)
+        {
+            base = (lane << MEMORY_SHIFT) + address;
+            if(!this.halted[lane] && !this.waitingForKey[lane] && (this.memory[base] != high || this.memory[base + 1] != low))
+            {
+                return -1; // A lane rewrote its code
+            }
+        }
+        return (high & 0xFF) << 8 | (low & 0xFF);
+    }
+
+    // Runs a shared opcode while some lanes sit out. The loops in executeAll cover every lane, so what they can
+    // change is saved for the idle lanes and put back afterwards, which keeps a check per lane out of the loops
+    private void executeAround(int op, int opcode)
+    {
+        int[] vx = this.registers[(opcode & 0x0F00) >>> 8];
+        int[] vf = this.registers[0xF];
+        int[][] saved = this.saved;
+        for(int i = 0; i < this.idleCount; i++)
+        {
+            int lane = this.idle[i];
+            saved[0][i] = this.pc[lane];
+            saved[1][i] = vx[lane];
+            saved[2][i] = vf[lane];
+            saved[3][i] = this.I[lane];
+            saved[4][i] = this.delayTimer[lane];
+            saved[5][i] = this.soundTimer[lane];
+        }
+        this.executeAll(op, opcode);
+        for(int i = 0; i < this.idleCount; i++)
+        {
+            int lane = this.idle[i];
+            this.pc[lane] = saved[0][i];
+            vx[lane] = saved[1][i];
+            vf[lane] = saved[2][i];
+            this.I[lane] = saved[3][i];
+            this.delayTimer[lane] = saved[4][i];
+            this.soundTimer[lane] = saved[5][i];
+        }
+    }
+
+    // Executes one opcode on every lane at once. Register, timer and skip operations are plain loops over the lane
+    // arrays, everything else goes lane by lane
+    private void executeAll(int op, int opcode)
+    {
+        int x = (opcode & 0x0F00) >>> 8;
+        int y = (opcode & 0x00F0) >>> 4;
+        int nn = opcode & 0x00FF;
+        int nnn = opcode & 0x0FFF;
+        int[] vx = this.registers[x];
+        int[] vy = this.registers[y];
+        int[] vf = this.registers[0xF];
+        int[] pc = this.pc;
+        int lanes = this.lanes;
+
+        switch(op) {
+            case Decoder.NOP:
+                for(int lane = 0; lane < lanes; lane++) pc[lane] += 2;
+                break;
+            case Decoder.JP:
+                Arrays.fill(pc, nnn);
+                break;
+            case Decoder.SE_VX_NN:
+                for(int lane = 0; lane < lanes; lane++) pc[lane] += vx[lane] == nn ? 4 : 2;
+                break;
+            case Decoder.SNE_VX_NN:
+                for(int lane = 0; lane < lanes; lane++) pc[lane] += vx[lane] != nn ? 4 : 2;
+                break;
+            case Decoder.SE_VX_VY:
+                for(int lane = 0; lane < lanes; lane++) pc[lane] += vx[lane] == vy[lane] ? 4 : 2;
+                break;
+            case Decoder.SNE_VX_VY:
+                for(int lane = 0; lane < lanes; lane++) pc[lane] += vx[lane] != vy[lane] ? 4 : 2;
+                break;
+            case Decoder.LD_VX_NN:
+                Arrays.fill(vx, nn);
+                this.advanceAll();
+                break;
+            case Decoder.ADD_VX_NN:
+                for(int lane = 0; lane < lanes; lane++) vx[lane] = (vx[lane] + nn) & 0xFF;
+                this.advanceAll();
+                break;
+            case Decoder.LD_VX_VY:
+                System.arraycopy(vy, 0, vx, 0, lanes);
+                this.advanceAll();
+                break;
+            case Decoder.OR:
+                for(int lane = 0; lane < lanes; lane++) vx[lane] |= vy[lane];
+                this.advanceAll();
+                break;
+            case Decoder.AND:
+                for(int lane = 0; lane < lanes; lane++) vx[lane] &= vy[lane];
+                this.advanceAll();
+                break;
+            case Decoder.XOR:
+                for(int lane = 0; lane < lanes; lane++) vx[lane] ^= vy[lane];
+                this.advanceAll();
+                break;
+            case Decoder.ADD_VX_VY: // Flag first and operands read again after it, like CPU.execute, so VF as x or y gives the same result
+                for(int lane = 0; lane < lanes; lane++)
+                {
+                    int sum = vx[lane] + vy[lane];
+                    vf[lane] = sum >>> 8;
+                    vx[lane] = sum & 0xFF;
+                }
+                this.advanceAll();
+                break;
+            case Decoder.SUB:
+                for(int lane = 0; lane < lanes; lane++)
+                {
+                    vf[lane] = vx[lane] > vy[lane] ? 1 : 0;
+                    vx[lane] = (vx[lane] - vy[lane]) & 0xFF;
+                }
+                this.advanceAll();
+                break;
+            case Decoder.SUBN:
+                for(int lane = 0; lane < lanes; lane++)
+                {
+                    vf[lane] = vy[lane] > vx[lane] ? 1 : 0;
+                    vx[lane] = (vy[lane] - vx[lane]) & 0xFF;
+                }
+                this.advanceAll();
+                break;
+            case Decoder.SHR:
+                for(int lane = 0; lane < lanes; lane++)
+                {
+                    vf[lane] = vx[lane] & 1;
+                    vx[lane] = vx[lane] >> 1;
+                }
+                this.advanceAll();
+                break;
+            case Decoder.SHL:
+                for(int lane = 0; lane < lanes; lane++)
+                {
+                    vf[lane] = vx[lane] >>> 7 & 1;
+                    vx[lane] = (vx[lane] << 1) & 0xFF;
+                }
+                this.advanceAll();
+                break;
+            case Decoder.LD_I:
+                Arrays.fill(this.I, nnn);
+                this.advanceAll();
+                break;
+            case Decoder.ADD_I_VX:
+                for(int lane = 0; lane < lanes; lane++) this.I[lane] += vx[lane];
+                this.advanceAll();
+                break;
+            case Decoder.LD_F_VX:
+                for(int lane = 0; lane < lanes; lane++) this.I[lane] = vx[lane] * 5;
+                this.advanceAll();
+                break;
+            case Decoder.LD_VX_DT:
+                System.arraycopy(this.delayTimer, 0, vx, 0, lanes);
+                this.advanceAll();
+                break;
+            case Decoder.LD_DT_VX:
+                System.arraycopy(vx, 0, this.delayTimer, 0, lanes);
+                this.advanceAll();
+                break;
+            case Decoder.LD_ST_VX:
+                System.arraycopy(vx, 0, this.soundTimer, 0, lanes);
+                this.advanceAll();
+                break;
+            case Decoder.CLS:
+                if(this.idleCount == 0)
+                {
+                    Arrays.fill(this.display, 0L);
+                    this.advanceAll();
+                    break;
+                }
+                // Falls through, lanes sitting out keep their pictures
+            default: // Lane by lane, so lanes sitting out are skipped rather than saved
+                for(int lane = 0; lane < lanes; lane++)
+                {
+                    if(this.halted[lane] || this.waitingForKey[lane])
+                    {
+                        continue;
+                    }
+                    this.pc[lane] += 2;
+                    this.executeLane(lane, op, opcode);
+                }
+                break;
+        }
+    }
+
+    private void advanceAll()
+    {
+        for(int lane = 0; lane < this.lanes; lane++)
+        {
+            this.pc[lane] += 2;
+        }
+    }
+
+    private int fetch(int lane, int address)
+    {
+        int base = (lane << MEMORY_SHIFT) + address;
+        return (this.memory[base] & 0xFF) << 8 | (this.memory[base + 1] & 0xFF);
+    }
+
+    // Executes an opcode on one lane whose pc already points past it, the same way CPU.execute does
+    private void executeLane(int lane, int op, int opcode)
+    {
+        int x = (opcode & 0x0F00) >>> 8;
+        int y = (opcode & 0x00F0) >>> 4;
+        int n = opcode & 0x000F;
+        int nn = opcode & 0x00FF;
+        int nnn = opcode & 0x0FFF;
+        int[][] v = this.registers;
+        int base = lane << MEMORY_SHIFT;
+
+        switch(op) {
+            case Decoder.NOP:
+                break;
+            case Decoder.CLS:
+                Arrays.fill(this.display, lane * DISPLAY_WORDS, (lane + 1) * DISPLAY_WORDS, 0L);
+                break;
+            case Decoder.RET:
+                if(this.sp[lane] < 0)
+                {
+                    this.halt(lane);
+                    return;
+                }
+                this.pc[lane] = this.stack[this.sp[lane]--][lane];
+                break;
+            case Decoder.JP:
+                this.pc[lane] = nnn;
+                break;
+            case Decoder.CALL:
+                if(this.sp[lane] >= 15)
+                {
+                    this.halt(lane);
+                    return;
+                }
+                this.stack[++this.sp[lane]][lane] = this.pc[lane];
+                this.pc[lane] = nnn;
+                break;
+            case Decoder.SE_VX_NN:
+                if(v[x][lane] == nn) this.pc[lane] += 2;
+                break;
+            case Decoder.SNE_VX_NN:
+                if(v[x][lane] != nn) this.pc[lane] += 2;
+                break;
+            case Decoder.SE_VX_VY:
+                if(v[x][lane] == v[y][lane]) this.pc[lane] += 2;
+                break;
+            case Decoder.SNE_VX_VY:
+                if(v[x][lane] != v[y][lane]) this.pc[lane] += 2;
+                break;
+            case Decoder.LD_VX_NN:
+                v[x][lane] = nn;
+                break;
+            case Decoder.ADD_VX_NN:
+                v[x][lane] = (v[x][lane] + nn) & 0xFF;
+                break;
+            case Decoder.LD_VX_VY:
+                v[x][lane] = v[y][lane];
+                break;
+            case Decoder.OR:
+                v[x][lane] |= v[y][lane];
+                break;
+            case Decoder.AND:
+                v[x][lane] &= v[y][lane];
+                break;
+            case Decoder.XOR:
+                v[x][lane] ^= v[y][lane];
+                break;
+            case Decoder.ADD_VX_VY:
+                int sum = v[x][lane] + v[y][lane];
+                v[0xF][lane] = sum > 0xFF ? 1 : 0;
+                v[x][lane] = sum & 0xFF;
+                break;
+            case Decoder.SUB:
+                v[0xF][lane] = v[x][lane] > v[y][lane] ? 1 : 0;
+                v[x][lane] = (v[x][lane] - v[y][lane]) & 0xFF;
+                break;
+            case Decoder.SHR:
+                v[0xF][lane] = v[x][lane] & 1;
+                v[x][lane] = v[x][lane] >> 1;
+                break;
+            case Decoder.SUBN:
+                v[0xF][lane] = v[y][lane] > v[x][lane] ? 1 : 0;
+                v[x][lane] = (v[y][lane] - v[x][lane]) & 0xFF;
+                break;
+            case Decoder.SHL:
+                v[0xF][lane] = v[x][lane] >>> 7 & 1;
+                v[x][lane] = (v[x][lane] << 1) & 0xFF;
+                break;
+            case Decoder.LD_I:
+                this.I[lane] = nnn;
+                break;
+            case Decoder.JP_V0:
+                this.pc[lane] = nnn + v[0][lane];
+                break;
+            case Decoder.RND:
+                long r = this.randomState[lane]; // Same xorshift as CPU.nextRandom
+                r ^= r << 13;
+                r ^= r >>> 7;
+                r ^= r << 17;
+                this.randomState[lane] = r;
+                v[x][lane] = (int) (r >>> 56) & nn;
+                break;
+            case Decoder.DRW:
+                if(this.I[lane] + n > MEMORY_SIZE)
+                {
+                    this.halt(lane);
+                    return;
+                }
+                int spriteX = v[x][lane] & 63;
+                int spriteY = v[y][lane];
+                int rows = lane * DISPLAY_WORDS;
+                long collision = 0;
+                for(int row = 0; row < n; row++)
+                {
+                    long sprite = Long.rotateRight((long) (this.memory[base + this.I[lane] + row] & 0xFF) << 56, spriteX); // A row is one word, so wrapping is a rotate
+                    int index = rows + (spriteY + row) % Display.ROWS;
+                    collision |= this.display[index] & sprite;
+                    this.display[index] ^= sprite;
+                }
+                v[0xF][lane] = collision != 0 ? 1 : 0;
+                break;
+            case Decoder.SKP:
+                if((this.keys[lane] >>> (v[x][lane] & 0xF) & 1) != 0) this.pc[lane] += 2;
+                break;
+            case Decoder.SKNP:
+                if((this.keys[lane] >>> (v[x][lane] & 0xF) & 1) == 0) this.pc[lane] += 2;
+                break;
+            case Decoder.LD_VX_DT:
+                v[x][lane] = this.delayTimer[lane];
+                break;
+            case Decoder.LD_VX_K:
+                if(this.keys[lane] == 0)
+                {
+                    this.pc[lane] -= 2; // Runs again next frame, the lane sits out the rest of this one
+                    this.waitingForKey[lane] = true;
+                    this.running--;
+                }
+                else
+                {
+                    v[x][lane] = Integer.numberOfTrailingZeros(this.keys[lane]); // Lowest key held, like InputSource.pressedKey
+                }
+                break;
+            case Decoder.LD_DT_VX:
+                this.delayTimer[lane] = v[x][lane];
+                break;
+            case Decoder.LD_ST_VX:
+                this.soundTimer[lane] = v[x][lane];
+                break;
+            case Decoder.ADD_I_VX:
+                this.I[lane] += v[x][lane];
+                break;
+            case Decoder.LD_F_VX:
+                this.I[lane] = v[x][lane] * 5;
+                break;
+            case Decoder.LD_B_VX:
+                if(this.I[lane] + 3 > MEMORY_SIZE)
+                {
+                    this.halt(lane);
+                    return;
+                }
+                int value = v[x][lane];
+                this.memory[base + this.I[lane]] = (byte) (value / 100);
+                this.memory[base + this.I[lane] + 1] = (byte) (value / 10 % 10);
+                this.memory[base + this.I[lane] + 2] = (byte) (value % 10);
+                break;
+            case Decoder.LD_I_VX:
+                if(this.I[lane] + x + 1 > MEMORY_SIZE)
+                {
+                    this.halt(lane);
+                    return;
+                }
+                for(int i = 0; i <= x; i++)
+                {
+                    this.memory[base + this.I[lane] + i] = (byte) v[i][lane];
+                }
+                break;
+            case Decoder.LD_VX_I:
+                if(this.I[lane] + x + 1 > MEMORY_SIZE)
+                {
+                    this.halt(lane);
+                    return;
+                }
+                for(int i = 0; i <= x; i++)
+                {
+                    v[i][lane] = this.memory[base + this.I[lane] + i] & 0xFF;
+                }
+                break;
+        }
+    }
+
+    // Stops a lane that read or wrote outside its memory or stack, where CPU would throw
+    private void halt(int lane)
+    {
+        this.halted[lane] = true;
+        this.running--;
+    }
+}
@@ -0,0 +1,95 @@
+package com.arjun.chip8;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Objects;
+
+// Packs the state of many machines into one off-heap slab, a fixed size slot per machine.
+// A machine only needs a CPU while it runs: CPU state is loaded from a slot, run, then saved back, so the heap holds
+// a few pooled CPUs no matter how many machines are stored, and the garbage collector never sees the slab.
+public final class MachineStore implements AutoCloseable {
+    static final int MEMORY_SIZE = 4096;
+    static final int DISPLAY_WORDS = Display.ROWS * Display.COLS / 64;
+
+    // Offsets into a slot, the longs come first so every field is naturally aligned
+    static final long CYCLES = 0;
+    static final long RANDOM = 8;
+    static final long DISPLAY = 16;
+    static final long INDEX = DISPLAY + DISPLAY_WORDS * 8L;
+    static final long PC = INDEX + 2;
+    static final long STACK = PC + 2; // 16 return addresses, two bytes each
+    static final long REGISTERS = STACK + 32; // One byte per register
+    static final long SP = REGISTERS + 16;
+    static final long DELAY_TIMER = SP + 1;
+    static final long SOUND_TIMER = DELAY_TIMER + 1;
+    static final long WAITING = SOUND_TIMER + 1;
+    static final long MEMORY = WAITING + 1;
+    static final long SLOT_SIZE = (MEMORY + MEMORY_SIZE + 7) & ~7L; // 4424 bytes
+
+    private final Arena arena;
+    private final MemorySegment slab;
+    private final int capacity;
+
+    public MachineStore(int capacity)
+    {
+        this.arena = Arena.ofShared(); // Slots can be loaded and saved from any thread, each slot by one thread at a time
+        this.slab = this.arena.allocate(SLOT_SIZE * capacity, 8);
+        this.capacity = capacity;
+    }
+
+    public int capacity()
+    {
+        return this.capacity;
+    }
+
+    // Total off-heap bytes used by the slab
+    public long byteSize()
+    {
+        return this.slab.byteSize();
+    }
+
+    public void save(int slot, CPU cpu)
+    {
+        cpu.saveTo(this.slab, this.offset(slot));
+    }
+
+    public void load(int slot, CPU cpu)
+    {
+        cpu.loadFrom(this.slab, this.offset(slot));
+    }
+
+    // Copies a whole machine to another slot, used to start many sessions from one booted machine
+    public void copy(int from, int to)
+    {
+        MemorySegment.copy(this.slab, this.offset(from), this.slab, this.offset(to), SLOT_SIZE);
+    }
+
+    // Fields read straight from the slab, without loading the machine into a CPU
+    public long getCycles(int slot)
+    {
+        return this.slab.get(ValueLayout.JAVA_LONG, this.offset(slot) + CYCLES);
+    }
+
+    public int getPc(int slot)
+    {
+        return this.slab.get(ValueLayout.JAVA_SHORT, this.offset(slot) + PC) & 0xFFFF;
+    }
+
+    public boolean isWaitingForKey(int slot)
+    {
+        return this.slab.get(ValueLayout.JAVA_BYTE, this.offset(slot) + WAITING) != 0;
+    }
+
+    // Frees the slab, no slot may be used afterwards
+    @Override
+    public void close()
+    {
+        this.arena.close();
+    }
+
+    private long offset(int slot)
+    {
+        return Objects.checkIndex(slot, this.capacity) * SLOT_SIZE;
+    }
+}
@@ -1,23 +1,119 @@
 package com.arjun.chip8;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 
 public class Main {
-    public static void main(String[] args) throws IOException, InterruptedException {
-        String romName = "tetris.ch8";
-
-        InputStream inputStream = Main.class.getClassLoader().getResourceAsStream(romName);
-        byte[] program = new byte[4096];
-        int length = inputStream.read(program);
-        CPU cpu = new CPU(length);
-        cpu.loadProgram(program);
-        short opcode = 0;
-        while(true)
-        {
-            opcode = cpu.fetchOpcode();
-            cpu.decodeAndExecute(opcode);
-            Thread.sleep(1);
+    // Runs tetris.ch8 in a window when no ROM is given, Launcher lists the options
+    public static void main(String[] args) throws IOException {
+        Launcher.main(args.length > 0 ? args : new String[] {"tetris.ch8"});
+    }
+
+    static void run(Launcher options) throws IOException {
+        RomImage rom = RomLibrary.shared().load(options.rom);
+        int length = rom.length();
+        Variant variant = options.variant;
+
+        // Keyboard and Window are the only classes that pull in AWT and Swing, so a headless run never loads them
+        Display display = variant.newDisplay();
+        InputSource input = options.windowed ? new Keyboard() : new MemoryInput();
+        VideoSink video = options.windowed ? new Window(display, (Keyboard) input) : new NullVideo();
+        InputRecorder recorder = null;
+        if(options.recordFile != null)
+        {
+            InputMovie movie = new InputMovie(options.seed, rom.checksum(), options.instructionsPerFrame, variant);
+            recorder = new InputRecorder(input, movie, Scheduler.FRAME_RATE); // A checkpoint every second
+            input = recorder;
+            Path recordPath = Path.of(options.recordFile);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> writeMovie(movie, recordPath)));
+        }
+        CPU cpu = new CPU(length, variant, display, video, input);
+        cpu.setSeed(options.seed);
+        cpu.setEngine(ExecutionEngine.named(options.engine));
+        cpu.loadProgram(rom);
+        cpu.getEngine().preload(cpu, rom); // Block engines analyze the ROM and translate the code they find ahead of time
+        if(Tracer.ENABLED)
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> writeTrace(cpu.getTracer()))); // Dumps the trace when the emulator exits
+        }
+        if(Metrics.ENABLED)
+        {
+            MetricsRegistry.get().startDump(Duration.ofSeconds(Long.getLong("chip8.metrics.period", 10)));
+        }
+        Scheduler scheduler = new Scheduler(cpu, options.instructionsPerFrame, options.throttled);
+        Audio audio = new Audio(openAudio(options.audio));
+        audio.start();
+        scheduler.addFrameListener(audio);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> closeAudio(audio))); // Finishes a WAV file's header
+        if(recorder != null)
+        {
+            scheduler.addFrameListener(recorder);
+        }
+        if(options.debug)
+        {
+            Debugger debugger = new Debugger(cpu, System.out);
+            debugger.startConsole(System.in);
+            scheduler.addFrameListener(debugger);
+            debugger.pause();
+        }
+        scheduler.runFrames(options.frames);
+        if(!options.windowed)
+        {
+            System.out.printf("%s: %d frames, %d instructions, display %016X%n", rom.getName(), scheduler.getFrames(), cpu.getCycles(), display.hash());
+        }
+    }
+
+    // Writes the trace to the file named by chip8.trace.file, decode it with TraceDecoder
+    private static void writeTrace(Tracer tracer)
+    {
+        Path path = Path.of(System.getProperty("chip8.trace.file", "chip8.trace"));
+        try(OutputStream out = Files.newOutputStream(path))
+        {
+            tracer.writeTo(out);
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not write trace to " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static AudioSink openAudio(String name)
+    {
+        try
+        {
+            return AudioSink.named(name);
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not open audio " + name + ", running without sound: " + e.getMessage());
+            return new NullAudio();
+        }
+    }
+
+    private static void closeAudio(Audio audio)
+    {
+        try
+        {
+            audio.close();
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not close audio: " + e.getMessage());
+        }
+    }
+
+    private static void writeMovie(InputMovie movie, Path path)
+    {
+        try(OutputStream out = Files.newOutputStream(path))
+        {
+            movie.writeTo(out);
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not write input movie to " + path + ": " + e.getMessage());
         }
     }
 }
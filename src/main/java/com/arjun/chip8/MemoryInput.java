@@ -0,0 +1,40 @@
+package com.arjun.chip8;
+
+// Input source whose keys are set by code instead of a keyboard, used when running without a screen
+public class MemoryInput implements InputSource {
+    private final int[] keyboard;
+
+    public MemoryInput()
+    {
+        this.keyboard = new int[16];
+    }
+
+    public void pressKey(int key)
+    {
+        this.keyboard[key & 0xF] = 1;
+    }
+
+    public void releaseKey(int key)
+    {
+        this.keyboard[key & 0xF] = 0;
+    }
+
+    @Override
+    public boolean isKeyPressed(int key)
+    {
+        return this.keyboard[key & 0xF] == 1;
+    }
+
+    @Override
+    public int pressedKey()
+    {
+        for(int i = 0; i < 16; i++)
+        {
+            if(this.keyboard[i] == 1)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,67 @@
+package com.arjun.chip8;
+
+// Counters for one CPU. Only the emulation thread writes them, so they are plain fields,
+// and readers such as MetricsRegistry may see values a moment out of date
+public final class Metrics {
+    // Read once at startup so the JIT drops every metrics call when metrics are off
+    public static final boolean ENABLED = Boolean.getBoolean("chip8.metrics");
+
+    // Shared by every window, written on the event dispatch thread
+    static final Histogram REPAINT_LATENCY = new Histogram(); // Nanoseconds from asking for a repaint to painting
+    static final Histogram PAINT_TIME = new Histogram(); // Nanoseconds spent in Window.paint
+
+    private final long[] opCounts; // Interpreted instructions by operation id, JIT compiled code and skipped idle loops are not included
+    private volatile long instructions; // Updated at the end of every frame
+    private volatile long frames;
+    private long drawsAtFrameStart;
+
+    final Histogram frameTime; // Nanoseconds spent running each frame, not counting the wait for the next one
+    final Histogram drawsPerFrame;
+
+    Metrics()
+    {
+        this.opCounts = new long[Decoder.NAMES.length];
+        this.frameTime = new Histogram();
+        this.drawsPerFrame = new Histogram();
+    }
+
+    void countOp(int op)
+    {
+        this.opCounts[op]++;
+    }
+
+    void frameEnded(long cycles, long nanos)
+    {
+        long draws = this.opCounts[Decoder.DRW];
+        this.drawsPerFrame.record(draws - this.drawsAtFrameStart);
+        this.drawsAtFrameStart = draws;
+        this.frameTime.record(nanos);
+        this.instructions = cycles;
+        this.frames++;
+    }
+
+    public long getOpCount(int op)
+    {
+        return this.opCounts[op];
+    }
+
+    public long getInstructions()
+    {
+        return this.instructions;
+    }
+
+    public long getFrames()
+    {
+        return this.frames;
+    }
+
+    public Histogram getFrameTime()
+    {
+        return this.frameTime;
+    }
+
+    public Histogram getDrawsPerFrame()
+    {
+        return this.drawsPerFrame;
+    }
+}
@@ -0,0 +1,30 @@
+package com.arjun.chip8;
+
+import java.util.Map;
+
+// Metrics of every CPU in the JVM, published over JMX as com.arjun.chip8:type=Metrics
+public interface MetricsMXBean {
+    int getSessions();
+
+    long getInstructions();
+
+    double getInstructionsPerSecond();
+
+    Map<String, Long> getOpcodeCounts();
+
+    double getDrawCallsPerFrame();
+
+    long getFrameTimeP50Nanos();
+
+    long getFrameTimeP99Nanos();
+
+    long getFrameTimeMaxNanos();
+
+    long getRepaintLatencyP50Nanos();
+
+    long getRepaintLatencyP99Nanos();
+
+    long getPaintTimeP99Nanos();
+
+    String toJson();
+}
@@ -0,0 +1,240 @@
+package com.arjun.chip8;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Adds up the metrics of every CPU, publishes them over JMX and can log them as JSON on a timer.
+// CPUs are never told to unregister, so the registry only holds their metrics weakly and a CPU that has been
+// collected drops out of the totals the next time they are read.
+public final class MetricsRegistry implements MetricsMXBean {
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private final Queue<WeakReference<Metrics>> sessions;
+    private final long startNanos;
+    private long lastSampleNanos; // Instructions per second is measured between samples
+    private long lastSampleInstructions;
+    private double instructionsPerSecond;
+    private boolean registered;
+
+    private MetricsRegistry()
+    {
+        this.sessions = new ConcurrentLinkedQueue<>();
+        this.startNanos = System.nanoTime();
+        this.lastSampleNanos = this.startNanos;
+    }
+
+    public static MetricsRegistry get()
+    {
+        return INSTANCE;
+    }
+
+    // Creates the metrics for a new CPU, registering the MBean the first time
+    synchronized Metrics register()
+    {
+        if(!this.registered)
+        {
+            this.registered = true;
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("com.arjun.chip8:type=Metrics"));
+            }
+            catch(JMException e)
+            {
+                LOG.warn("Could not register the metrics MBean", e);
+            }
+        }
+        Metrics metrics = new Metrics();
+        this.sessions.add(new WeakReference<>(metrics));
+        return metrics;
+    }
+
+    // The metrics of every CPU still alive, removing the ones that have been collected
+    private List<Metrics> live()
+    {
+        List<Metrics> live = new ArrayList<>();
+        for(Iterator<WeakReference<Metrics>> it = this.sessions.iterator(); it.hasNext(); )
+        {
+            Metrics metrics = it.next().get();
+            if(metrics == null)
+            {
+                it.remove();
+            }
+            else
+            {
+                live.add(metrics);
+            }
+        }
+        return live;
+    }
+
+    // Logs the metrics as JSON every period on a daemon thread
+    public void startDump(Duration period)
+    {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chip8-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> LOG.info("{}", this.toJson()), period.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int getSessions()
+    {
+        return this.live().size();
+    }
+
+    @Override
+    public long getInstructions()
+    {
+        long total = 0;
+        for(Metrics metrics : this.live())
+        {
+            total += metrics.getInstructions();
+        }
+        return total;
+    }
+
+    // Measured since the last call, or since startup on the first call
+    @Override
+    public synchronized double getInstructionsPerSecond()
+    {
+        long now = System.nanoTime();
+        long instructions = this.getInstructions();
+        if(now - this.lastSampleNanos >= 100_000_000L) // Calls closer together than 100 ms get the previous value
+        {
+            this.instructionsPerSecond = Math.max(0, instructions - this.lastSampleInstructions) * 1e9 / (now - this.lastSampleNanos); // Collected CPUs take their instructions with them
+            this.lastSampleNanos = now;
+            this.lastSampleInstructions = instructions;
+        }
+        return this.instructionsPerSecond;
+    }
+
+    @Override
+    public Map<String, Long> getOpcodeCounts()
+    {
+        List<Metrics> live = this.live();
+        Map<String, Long> counts = new TreeMap<>();
+        for(int op = 0; op < Decoder.NAMES.length; op++)
+        {
+            long total = 0;
+            for(Metrics metrics : live)
+            {
+                total += metrics.getOpCount(op);
+            }
+            counts.put(Decoder.NAMES[op], total);
+        }
+        return counts;
+    }
+
+    @Override
+    public double getDrawCallsPerFrame()
+    {
+        long draws = 0;
+        long frames = 0;
+        for(Metrics metrics : this.live())
+        {
+            draws += metrics.getOpCount(Decoder.DRW);
+            frames += metrics.getFrames();
+        }
+        return frames == 0 ? 0 : (double) draws / frames;
+    }
+
+    @Override
+    public long getFrameTimeP50Nanos()
+    {
+        return this.frameTimePercentile(50);
+    }
+
+    @Override
+    public long getFrameTimeP99Nanos()
+    {
+        return this.frameTimePercentile(99);
+    }
+
+    @Override
+    public long getFrameTimeMaxNanos()
+    {
+        long max = 0;
+        for(Metrics metrics : this.live())
+        {
+            max = Math.max(max, metrics.getFrameTime().getMax());
+        }
+        return max;
+    }
+
+    // The worst session's percentile, so one slow session is not hidden by many fast ones
+    private long frameTimePercentile(double percentile)
+    {
+        long worst = 0;
+        for(Metrics metrics : this.live())
+        {
+            worst = Math.max(worst, metrics.getFrameTime().getPercentile(percentile));
+        }
+        return worst;
+    }
+
+    @Override
+    public long getRepaintLatencyP50Nanos()
+    {
+        return Metrics.REPAINT_LATENCY.getPercentile(50);
+    }
+
+    @Override
+    public long getRepaintLatencyP99Nanos()
+    {
+        return Metrics.REPAINT_LATENCY.getPercentile(99);
+    }
+
+    @Override
+    public long getPaintTimeP99Nanos()
+    {
+        return Metrics.PAINT_TIME.getPercentile(99);
+    }
+
+    @Override
+    public String toJson()
+    {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"sessions\":").append(this.getSessions())
+                .append(",\"instructions\":").append(this.getInstructions())
+                .append(",\"instructionsPerSecond\":").append(Math.round(this.getInstructionsPerSecond()))
+                .append(",\"drawCallsPerFrame\":").append(String.format("%.2f", this.getDrawCallsPerFrame()))
+                .append(",\"frameTimeNanos\":{\"p50\":").append(this.getFrameTimeP50Nanos())
+                .append(",\"p99\":").append(this.getFrameTimeP99Nanos())
+                .append(",\"max\":").append(this.getFrameTimeMaxNanos())
+                .append("},\"repaintLatencyNanos\":{\"p50\":").append(this.getRepaintLatencyP50Nanos())
+                .append(",\"p99\":").append(this.getRepaintLatencyP99Nanos())
+                .append("},\"paintTimeP99Nanos\":").append(this.getPaintTimeP99Nanos())
+                .append(",\"opcodes\":{");
+        boolean first = true;
+        for(Map.Entry<String, Long> entry : this.getOpcodeCounts().entrySet())
+        {
+            if(entry.getValue() == 0)
+            {
+                continue;
+            }
+            json.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":").append(entry.getValue());
+            first = false;
+        }
+        return json.append("}}").toString();
+    }
+}
@@ -0,0 +1,9 @@
+package com.arjun.chip8;
+
+// Audio sink that discards every sample, used when running without sound
+public class NullAudio implements AudioSink {
+    @Override
+    public void write(byte[] samples, int offset, int length)
+    {
+    }
+}
@@ -0,0 +1,9 @@
+package com.arjun.chip8;
+
+// Video sink that discards every refresh, used when running without a screen
+public class NullVideo implements VideoSink {
+    @Override
+    public void refresh(Display display, long dirtyRows)
+    {
+    }
+}
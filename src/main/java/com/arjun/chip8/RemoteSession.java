@@ -0,0 +1,86 @@
+package com.arjun.chip8;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// A session served by a DisplayServer. As a video sink it publishes a copy of the display each frame
+// something was drawn, and its input receives the keys viewers send back.
+public class RemoteSession implements VideoSink {
+    // One published picture, never changed after it is made so viewers can keep it as what they were last sent
+    static final class Frame {
+        final long sequence;
+        final long[] pixels;
+
+        Frame(long sequence, long[] pixels)
+        {
+            this.sequence = sequence;
+            this.pixels = pixels;
+        }
+    }
+
+    private final int id;
+    private final int rows;
+    private final int cols;
+    private final DisplayServer server;
+    private final KeyInput input; // Fed by the server's selector thread, the only producer
+    private final AtomicBoolean scheduled; // Set while the session waits in the server's queue, so frames coalesce
+    final List<DisplayServer.Viewer> viewers; // Only touched by the selector thread
+
+    private volatile Frame latest;
+
+    RemoteSession(int id, int rows, int cols, DisplayServer server)
+    {
+        this.id = id;
+        this.rows = rows;
+        this.cols = cols;
+        this.server = server;
+        this.input = new KeyInput();
+        this.scheduled = new AtomicBoolean();
+        this.viewers = new ArrayList<>();
+        this.latest = new Frame(0, new long[rows * cols / 64]);
+    }
+
+    public int getId()
+    {
+        return this.id;
+    }
+
+    public int getRows()
+    {
+        return this.rows;
+    }
+
+    public int getCols()
+    {
+        return this.cols;
+    }
+
+    public KeyInput getInput()
+    {
+        return this.input;
+    }
+
+    Frame getLatest()
+    {
+        return this.latest;
+    }
+
+    // Called by the server before it reads the latest frame, a frame published after this schedules the session again
+    void unschedule()
+    {
+        this.scheduled.set(false);
+    }
+
+    // Publishes the display on the emulation thread, the selector thread does the encoding and sending
+    @Override
+    public void refresh(Display display, long dirtyRows)
+    {
+        this.latest = new Frame(this.latest.sequence + 1, Arrays.copyOf(display.getPixels(), this.rows * this.cols / 64)); // Only the first plane is streamed
+        if(this.scheduled.compareAndSet(false, true))
+        {
+            this.server.schedule(this);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.arjun.chip8;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+// Shows a session served by a DisplayServer in a window and sends the keys pressed in it back
+public class RemoteViewer {
+    private final SocketChannel channel;
+    private final Display display;
+    private final Window window;
+    private final Keyboard keyboard;
+
+    public RemoteViewer(InetSocketAddress address, int session) throws IOException
+    {
+        this.channel = SocketChannel.open(address);
+        this.channel.write(ByteBuffer.allocate(4).putInt(0, session));
+        ByteBuffer hello = this.readFully(7);
+        if(hello.getInt() != 0x43385244)
+        {
+            throw new IOException("Not a chip 8 display server");
+        }
+        int rows = hello.get() & 0xFF;
+        int cols = hello.getShort() & 0xFFFF;
+        this.display = new Display(rows, cols);
+        this.keyboard = new Keyboard();
+        this.window = new Window(this.display, this.keyboard);
+    }
+
+    // Applies frames until the server closes the connection, keys are sent from a second thread
+    public void run() throws IOException
+    {
+        Thread keys = new Thread(this::sendKeys, "viewer-keys");
+        keys.setDaemon(true);
+        keys.start();
+        int wordsPerRow = this.display.getCols() / 64;
+        while(true)
+        {
+            ByteBuffer frame;
+            try
+            {
+                frame = this.readFully(this.readFully(4).getInt());
+            }
+            catch(EOFException e)
+            {
+                return;
+            }
+            long rows = FrameDelta.apply(frame, this.display.getPixels(), wordsPerRow);
+            if(rows != 0)
+            {
+                this.window.refresh(this.display, rows);
+            }
+        }
+    }
+
+    // Checks the keyboard once a frame and sends the keys that went down or up since the last check
+    private void sendKeys()
+    {
+        int sent = 0;
+        ByteBuffer events = ByteBuffer.allocate(16);
+        try
+        {
+            while(this.channel.isOpen())
+            {
+                this.keyboard.frameStarted(0);
+                int mask = this.keyboard.keyMask();
+                events.clear();
+                for(int changed = mask ^ sent; changed != 0; changed &= changed - 1)
+                {
+                    int key = Integer.numberOfTrailingZeros(changed);
+                    events.put((byte) (key | ((mask >>> key & 1) != 0 ? KeyEventQueue.PRESSED : 0)));
+                }
+                sent = mask;
+                events.flip();
+                while(events.hasRemaining())
+                {
+                    this.channel.write(events);
+                }
+                Thread.sleep(Scheduler.FRAME_NANOS / 1_000_000);
+            }
+        }
+        catch(IOException | InterruptedException e)
+        {
+            // The connection closed, run returns on its own
+        }
+    }
+
+    private ByteBuffer readFully(int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining())
+        {
+            if(this.channel.read(buffer) < 0)
+            {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+        return buffer.flip();
+    }
+
+    // Usage: RemoteViewer <host> <port> <session>
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 3)
+        {
+            System.err.println("Usage: RemoteViewer <host> <port> <session>");
+            System.exit(1);
+        }
+        new RemoteViewer(new InetSocketAddress(args[0], Integer.parseInt(args[1])), Integer.parseInt(args[2])).run();
+        System.exit(0); // Closes the window once the session is gone
+    }
+}
@@ -0,0 +1,86 @@
+package com.arjun.chip8;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Replays input movies headless at full speed and checks the display at every checkpoint
+public final class Replayer {
+    private static final Logger LOG = LoggerFactory.getLogger(Replayer.class);
+
+    private Replayer()
+    {
+    }
+
+    // Returns -1 when every checkpoint matches, otherwise the first frame whose display differs
+    public static long verify(RomImage rom, InputMovie movie, ExecutionEngine engine)
+    {
+        if(rom.checksum() != movie.getRomChecksum())
+        {
+            throw new IllegalArgumentException("The movie was recorded with a different ROM");
+        }
+        CPU cpu = new CPU(rom.length(), movie.getVariant(), movie.getVariant().newDisplay(), new NullVideo(), new InputPlayer(movie));
+        cpu.setEngine(engine);
+        cpu.setSeed(movie.getSeed());
+        cpu.loadProgram(rom);
+        Scheduler scheduler = new Scheduler(cpu, movie.getInstructionsPerFrame(), false);
+        for(int i = 0; i < movie.getCheckpointCount(); i++)
+        {
+            scheduler.runFrames(movie.getCheckpointFrame(i) - scheduler.getFrames());
+            if(cpu.getDisplay().hash() != movie.getCheckpointHash(i))
+            {
+                return movie.getCheckpointFrame(i);
+            }
+        }
+        return -1;
+    }
+
+    // Usage: Replayer <rom> <movie>... verifies every movie in parallel and exits with 1 if any fail
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException
+    {
+        if(args.length < 2)
+        {
+            System.err.println("Usage: Replayer <rom> <movie>...");
+            System.exit(1);
+        }
+        RomImage rom = RomLibrary.shared().load(args[0]);
+        String engine = System.getProperty("chip8.engine", "interpreter");
+
+        List<Future<Long>> results = new ArrayList<>();
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for(int i = 1; i < args.length; i++)
+            {
+                Path path = Path.of(args[i]);
+                results.add(executor.submit(() -> {
+                    try(InputStream in = Files.newInputStream(path))
+                    {
+                        return verify(rom, InputMovie.readFrom(in), ExecutionEngine.named(engine));
+                    }
+                }));
+            }
+        }
+        int failures = 0;
+        for(int i = 0; i < results.size(); i++)
+        {
+            long frame = results.get(i).get();
+            if(frame >= 0)
+            {
+                LOG.error("{} differs at frame {}", args[i + 1], frame);
+                failures++;
+            }
+        }
+        LOG.info("{} of {} movies replayed identically", results.size() - failures, results.size());
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,151 @@
+package com.arjun.chip8;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// What RomAnalyzer found out about a ROM without running it: its basic blocks, which routines call which,
+// and the stores that land on code
+public final class RomAnalysis {
+
+    // A run of instructions that is only entered at its first one and only left after its last one
+    public static final class BasicBlock {
+        final int start;
+        final int end; // Address after the last instruction
+        final List<Instruction> instructions;
+        final int[] successors; // Blocks control can go to next, not counting calls, empty after a return or an indirect jump
+
+        BasicBlock(int start, int end, List<Instruction> instructions, int[] successors)
+        {
+            this.start = start;
+            this.end = end;
+            this.instructions = instructions;
+            this.successors = successors;
+        }
+
+        public int getStart()
+        {
+            return this.start;
+        }
+
+        public int getEnd()
+        {
+            return this.end;
+        }
+
+        public List<Instruction> getInstructions()
+        {
+            return Collections.unmodifiableList(this.instructions);
+        }
+
+        public int[] getSuccessors()
+        {
+            return this.successors.clone();
+        }
+    }
+
+    // A store through I whose bytes overlap instructions reachable from the entry point
+    public static final class CodeWrite {
+        final int address; // The Fx33, Fx55 or 5xy2 doing the store
+        final int start; // First byte written
+        final int end; // Address after the last byte written
+
+        CodeWrite(int address, int start, int end)
+        {
+            this.address = address;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getAddress()
+        {
+            return this.address;
+        }
+
+        public int getStart()
+        {
+            return this.start;
+        }
+
+        public int getEnd()
+        {
+            return this.end;
+        }
+    }
+
+    private final String name;
+    private final Variant variant;
+    private final Map<Integer, BasicBlock> blocks; // By start address, in address order
+    private final Map<Integer, Set<Integer>> calls; // Routine entry to the routines it calls, the entry point included
+    private final List<CodeWrite> codeWrites;
+    private final List<Integer> unresolvedWrites; // Stores whose I could not be worked out, they may write code
+    private final List<Integer> indirectJumps; // Bnnn, whose targets depend on a register
+    private final List<Integer> escapes; // Jumps and calls that leave the ROM, usually into code it wrote itself
+
+    RomAnalysis(String name, Variant variant, Map<Integer, BasicBlock> blocks, Map<Integer, Set<Integer>> calls,
+                List<CodeWrite> codeWrites, List<Integer> unresolvedWrites, List<Integer> indirectJumps, List<Integer> escapes)
+    {
+        this.name = name;
+        this.variant = variant;
+        this.blocks = blocks;
+        this.calls = calls;
+        this.codeWrites = codeWrites;
+        this.unresolvedWrites = unresolvedWrites;
+        this.indirectJumps = indirectJumps;
+        this.escapes = escapes;
+    }
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+    public Variant getVariant()
+    {
+        return this.variant;
+    }
+
+    public Map<Integer, BasicBlock> getBlocks()
+    {
+        return Collections.unmodifiableMap(this.blocks);
+    }
+
+    public Map<Integer, Set<Integer>> getCallGraph()
+    {
+        return Collections.unmodifiableMap(this.calls);
+    }
+
+    public List<CodeWrite> getCodeWrites()
+    {
+        return Collections.unmodifiableList(this.codeWrites);
+    }
+
+    public List<Integer> getUnresolvedWrites()
+    {
+        return Collections.unmodifiableList(this.unresolvedWrites);
+    }
+
+    public List<Integer> getIndirectJumps()
+    {
+        return Collections.unmodifiableList(this.indirectJumps);
+    }
+
+    public List<Integer> getEscapes()
+    {
+        return Collections.unmodifiableList(this.escapes);
+    }
+
+    // Whether a known store writes any byte of the block, so code there may not stay as decoded
+    public boolean isWritten(BasicBlock block)
+    {
+        for(CodeWrite write : this.codeWrites)
+        {
+            if(write.start < block.end && block.start < write.end)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
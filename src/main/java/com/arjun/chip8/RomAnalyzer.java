@@ -0,0 +1,366 @@
+package com.arjun.chip8;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Recovers the control flow of a ROM without running it. Instructions are followed from the entry point through
+// jumps, calls, returns and skips, so data between routines is never mistaken for code, and are then cut into basic
+// blocks at every address something jumps, calls or skips to. Stores through I are checked against the code found,
+// when a store in the same block set I, to flag ROMs that write over their own instructions.
+public final class RomAnalyzer {
+    private final String name;
+    private final Variant variant;
+    private final byte[] memory;
+    private final int start;
+    private final int end; // Address after the last byte of the ROM
+    private final Instruction[] decoded; // Reachable instructions by address
+    private final BitSet leaders; // Addresses a block starts at
+    private final Deque<Integer> work; // Leaders still to follow
+    private final Map<Integer, Set<Integer>> calls;
+    private final List<Integer> indirectJumps;
+    private final List<Integer> escapes;
+
+    private RomAnalyzer(RomImage rom, Variant variant)
+    {
+        this.name = rom.getName();
+        this.variant = variant;
+        this.memory = new byte[variant.getMemorySize()];
+        rom.installInto(this.memory);
+        this.start = RomImage.LOAD_ADDRESS;
+        this.end = Math.min(this.start + rom.length(), this.memory.length);
+        this.decoded = new Instruction[this.memory.length];
+        this.leaders = new BitSet(this.memory.length);
+        this.work = new ArrayDeque<>();
+        this.calls = new TreeMap<>();
+        this.indirectJumps = new ArrayList<>();
+        this.escapes = new ArrayList<>();
+    }
+
+    public static RomAnalysis analyze(RomImage rom, Variant variant)
+    {
+        return new RomAnalyzer(rom, variant).run();
+    }
+
+    // Analyzes every ROM on the common fork join pool, each analysis is independent and only reads its own ROM
+    public static List<RomAnalysis> analyzeAll(List<RomImage> roms, Variant variant)
+    {
+        return roms.parallelStream().map(rom -> analyze(rom, variant)).toList();
+    }
+
+    private RomAnalysis run()
+    {
+        this.calls.put(this.start, new TreeSet<>());
+        this.follow(this.start, this.start);
+        while(!this.work.isEmpty())
+        {
+            this.trace(this.work.pop());
+        }
+        Map<Integer, RomAnalysis.BasicBlock> blocks = this.buildBlocks();
+        this.buildCallGraph(blocks);
+        List<RomAnalysis.CodeWrite> codeWrites = new ArrayList<>();
+        List<Integer> unresolvedWrites = new ArrayList<>();
+        this.findCodeWrites(blocks, codeWrites, unresolvedWrites);
+        return new RomAnalysis(this.name, this.variant, blocks, this.calls, codeWrites, unresolvedWrites, this.indirectJumps, this.escapes);
+    }
+
+    // Decodes a straight run of instructions from a leader up to the first one that changes the flow of control
+    private void trace(int pc)
+    {
+        while(this.decoded[pc] == null)
+        {
+            Instruction instruction = Disassembler.decode(this.memory, pc, this.variant);
+            this.decoded[pc] = instruction;
+            if(instruction.getOperation() == Decoder.CALL)
+            {
+                int target = instruction.getValue();
+                if(this.follow(pc, target))
+                {
+                    this.calls.putIfAbsent(target, new TreeSet<>());
+                }
+            }
+            else if(instruction.getOperation() == Decoder.JP_V0)
+            {
+                this.indirectJumps.add(pc);
+            }
+            if(!endsBlock(instruction.getOperation()))
+            {
+                pc = instruction.getNext();
+                if(pc + 1 >= this.end)
+                {
+                    this.escape(instruction.getAddress()); // Runs off the end of the ROM
+                    return;
+                }
+                continue;
+            }
+            for(int successor : this.successors(instruction))
+            {
+                this.follow(pc, successor);
+            }
+            return;
+        }
+    }
+
+    // Marks target as a block start and queues it, returns false when it is outside the ROM
+    private boolean follow(int from, int target)
+    {
+        if(target < this.start || target + 1 >= this.end)
+        {
+            this.escape(from);
+            return false;
+        }
+        if(!this.leaders.get(target))
+        {
+            this.leaders.set(target);
+            this.work.push(target);
+        }
+        return true;
+    }
+
+    private void escape(int from)
+    {
+        if(!this.escapes.contains(from)) // A skip can leave twice from the same address
+        {
+            this.escapes.add(from);
+        }
+    }
+
+    // Where control goes after an instruction, calls continue after the call since the routine returns there
+    private int[] successors(Instruction instruction)
+    {
+        int next = instruction.getNext();
+        switch(instruction.getOperation())
+        {
+            case Decoder.JP: return new int[]{instruction.getValue()};
+            case Decoder.RET:
+            case Decoder.EXIT:
+            case Decoder.JP_V0:
+                return new int[0];
+            case Decoder.SE_VX_NN:
+            case Decoder.SNE_VX_NN:
+            case Decoder.SE_VX_VY:
+            case Decoder.SNE_VX_VY:
+            case Decoder.SKP:
+            case Decoder.SKNP:
+                boolean longNext = this.variant == Variant.XOCHIP && Disassembler.word(this.memory, next) == 0xF000; // Skips jump over both words
+                return new int[]{next, next + (longNext ? 4 : 2)};
+            default: return new int[]{next};
+        }
+    }
+
+    private static boolean endsBlock(int op)
+    {
+        switch(op)
+        {
+            case Decoder.JP:
+            case Decoder.CALL:
+            case Decoder.RET:
+            case Decoder.EXIT:
+            case Decoder.JP_V0:
+            case Decoder.SE_VX_NN:
+            case Decoder.SNE_VX_NN:
+            case Decoder.SE_VX_VY:
+            case Decoder.SNE_VX_VY:
+            case Decoder.SKP:
+            case Decoder.SKNP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Cuts the decoded instructions into blocks, each running from a leader to a flow change or the next leader
+    private Map<Integer, RomAnalysis.BasicBlock> buildBlocks()
+    {
+        Map<Integer, RomAnalysis.BasicBlock> blocks = new LinkedHashMap<>();
+        for(int leader = this.leaders.nextSetBit(0); leader >= 0; leader = this.leaders.nextSetBit(leader + 1))
+        {
+            if(this.decoded[leader] == null)
+            {
+                continue;
+            }
+            List<Instruction> instructions = new ArrayList<>();
+            int pc = leader;
+            Instruction last;
+            do
+            {
+                last = this.decoded[pc];
+                instructions.add(last);
+                pc = last.getNext();
+            }
+            while(!endsBlock(last.getOperation()) && pc < this.decoded.length && this.decoded[pc] != null && !this.leaders.get(pc));
+            int[] successors;
+            if(endsBlock(last.getOperation()))
+            {
+                successors = this.successors(last);
+            }
+            else
+            {
+                successors = pc < this.decoded.length && this.decoded[pc] != null ? new int[]{pc} : new int[0];
+            }
+            blocks.put(leader, new RomAnalysis.BasicBlock(leader, pc, instructions, successors));
+        }
+        return blocks;
+    }
+
+    // Walks the blocks of every routine without entering the routines it calls, recording each call it makes
+    private void buildCallGraph(Map<Integer, RomAnalysis.BasicBlock> blocks)
+    {
+        for(Map.Entry<Integer, Set<Integer>> routine : this.calls.entrySet())
+        {
+            BitSet visited = new BitSet(this.memory.length);
+            Deque<Integer> pending = new ArrayDeque<>();
+            pending.push(routine.getKey());
+            while(!pending.isEmpty())
+            {
+                RomAnalysis.BasicBlock block = blocks.get(pending.pop());
+                if(block == null || visited.get(block.start))
+                {
+                    continue;
+                }
+                visited.set(block.start);
+                Instruction last = block.instructions.get(block.instructions.size() - 1);
+                if(last.getOperation() == Decoder.CALL)
+                {
+                    routine.getValue().add(last.getValue());
+                }
+                for(int successor : block.successors)
+                {
+                    pending.push(successor);
+                }
+            }
+        }
+    }
+
+    // Follows I through each block and records stores that land on reachable code. I is only known after an Annn or
+    // F000 nnnn earlier in the same block, stores with any other I are listed as unresolved
+    private void findCodeWrites(Map<Integer, RomAnalysis.BasicBlock> blocks, List<RomAnalysis.CodeWrite> codeWrites, List<Integer> unresolvedWrites)
+    {
+        BitSet code = new BitSet(this.memory.length);
+        for(Instruction instruction : this.decoded)
+        {
+            if(instruction != null)
+            {
+                code.set(instruction.getAddress(), instruction.getNext());
+            }
+        }
+        for(RomAnalysis.BasicBlock block : blocks.values())
+        {
+            int I = -1;
+            for(Instruction instruction : block.instructions)
+            {
+                int x = (instruction.getOpcode() & 0x0F00) >>> 8;
+                int y = (instruction.getOpcode() & 0x00F0) >>> 4;
+                int written = 0;
+                switch(instruction.getOperation())
+                {
+                    case Decoder.LD_I:
+                    case Decoder.LD_I_LONG:
+                        I = instruction.getValue();
+                        break;
+                    case Decoder.ADD_I_VX:
+                    case Decoder.LD_F_VX:
+                    case Decoder.LD_HF_VX:
+                        I = -1; // Depends on a register
+                        break;
+                    case Decoder.LD_B_VX:
+                        written = 3;
+                        break;
+                    case Decoder.LD_I_VX:
+                        written = x + 1;
+                        break;
+                    case Decoder.SAVE_RANGE:
+                        written = Math.abs(x - y) + 1;
+                        break;
+                }
+                if(written > 0 && I < 0)
+                {
+                    unresolvedWrites.add(instruction.getAddress());
+                }
+                else if(written > 0 && code.previousSetBit(I + written - 1) >= I)
+                {
+                    codeWrites.add(new RomAnalysis.CodeWrite(instruction.getAddress(), I, I + written));
+                }
+                if(I >= 0 && this.variant.incrementsI && (instruction.getOperation() == Decoder.LD_I_VX || instruction.getOperation() == Decoder.LD_VX_I))
+                {
+                    I += x + 1;
+                }
+            }
+        }
+    }
+
+    // Prints the blocks, call graph and code writes of an analysis
+    public static void print(RomAnalysis analysis, PrintStream out)
+    {
+        out.printf("%s (%s): %d blocks, %d routines%n", analysis.getName(), analysis.getVariant(), analysis.getBlocks().size(), analysis.getCallGraph().size());
+        for(RomAnalysis.BasicBlock block : analysis.getBlocks().values())
+        {
+            StringBuilder successors = new StringBuilder();
+            for(int successor : block.successors)
+            {
+                successors.append(successors.length() == 0 ? " -> " : ", ").append(String.format("0x%03X", successor));
+            }
+            out.printf("%s0x%03X-0x%03X%s%s%n", analysis.getCallGraph().containsKey(block.start) ? "routine " : "block ",
+                    block.start, block.end, successors, analysis.isWritten(block) ? " (written at run time)" : "");
+            for(Instruction instruction : block.instructions)
+            {
+                out.printf("  0x%03X  %04X  %s%n", instruction.getAddress(), instruction.getOpcode(), instruction);
+            }
+        }
+        for(Map.Entry<Integer, Set<Integer>> routine : analysis.getCallGraph().entrySet())
+        {
+            StringBuilder callees = new StringBuilder();
+            for(int callee : routine.getValue())
+            {
+                callees.append(callees.length() == 0 ? "" : ", ").append(String.format("0x%03X", callee));
+            }
+            out.printf("calls 0x%03X -> %s%n", routine.getKey(), callees.length() == 0 ? "none" : callees);
+        }
+        for(RomAnalysis.CodeWrite write : analysis.getCodeWrites())
+        {
+            out.printf("self-modifying: 0x%03X writes 0x%03X-0x%03X%n", write.address, write.start, write.end);
+        }
+        for(int address : analysis.getUnresolvedWrites())
+        {
+            out.printf("store with unknown target at 0x%03X%n", address);
+        }
+        for(int address : analysis.getIndirectJumps())
+        {
+            out.printf("indirect jump at 0x%03X%n", address);
+        }
+        for(int address : analysis.getEscapes())
+        {
+            out.printf("leaves the ROM at 0x%03X%n", address);
+        }
+    }
+
+    // Analyzes the named ROMs in parallel and prints each, -Dchip8.variant picks the instruction set
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length == 0)
+        {
+            System.err.println("Usage: RomAnalyzer <rom> [<rom> ...]");
+            System.exit(1);
+        }
+        Variant variant = Variant.named(System.getProperty("chip8.variant", "chip8"));
+        List<RomImage> roms = new ArrayList<>();
+        for(String name : args)
+        {
+            roms.add(RomLibrary.shared().load(name));
+        }
+        for(RomAnalysis analysis : analyzeAll(roms, variant))
+        {
+            print(analysis, System.out);
+            System.out.println();
+        }
+    }
+}
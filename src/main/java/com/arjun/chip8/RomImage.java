@@ -0,0 +1,59 @@
+package com.arjun.chip8;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+// A loaded ROM, read only and shared by every CPU that runs it
+public final class RomImage {
+    public static final int LOAD_ADDRESS = 0x200; // Programs start here, below it is the interpreter's memory
+
+    private final String name;
+    private final ByteBuffer data; // Read only, memory mapped when the ROM came from a file
+    private final long checksum;
+
+    RomImage(String name, ByteBuffer data)
+    {
+        this.name = name;
+        this.data = data.asReadOnlyBuffer();
+        CRC32 crc = new CRC32();
+        crc.update(this.data.duplicate());
+        this.checksum = crc.getValue();
+    }
+
+    public static RomImage of(String name, byte[] program)
+    {
+        return new RomImage(name, ByteBuffer.wrap(program.clone()));
+    }
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+    public int length()
+    {
+        return this.data.capacity();
+    }
+
+    public long checksum()
+    {
+        return this.checksum;
+    }
+
+    // Copies the ROM into memory at the load address in one bulk copy
+    public void installInto(byte[] memory)
+    {
+        if(LOAD_ADDRESS + this.length() > memory.length)
+        {
+            throw new IllegalArgumentException(this.name + " is " + this.length() + " bytes, too large for " + memory.length + " bytes of memory");
+        }
+        this.data.get(0, memory, LOAD_ADDRESS, this.length()); // Absolute get, so concurrent installs never share a position
+    }
+
+    public byte[] toByteArray()
+    {
+        byte[] bytes = new byte[this.length()];
+        this.data.get(0, bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,65 @@
+package com.arjun.chip8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Loads each ROM once and hands the same image to every CPU that asks for it.
+// Files are memory mapped, ROMs bundled on the classpath are read into a single heap buffer.
+public final class RomLibrary {
+    private static final RomLibrary SHARED = new RomLibrary();
+
+    private final ConcurrentMap<String, RomImage> images;
+
+    public RomLibrary()
+    {
+        this.images = new ConcurrentHashMap<>();
+    }
+
+    public static RomLibrary shared()
+    {
+        return SHARED;
+    }
+
+    // Loads a ROM from a file if one exists at the path, otherwise from the classpath
+    public RomImage load(String name) throws IOException
+    {
+        RomImage image = this.images.get(name);
+        if(image != null)
+        {
+            return image;
+        }
+        Path path = Path.of(name);
+        image = Files.isRegularFile(path) ? map(path) : readResource(name);
+        RomImage existing = this.images.putIfAbsent(name, image);
+        return existing != null ? existing : image;
+    }
+
+    private static RomImage map(Path path) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays valid after the channel closes
+            return new RomImage(path.getFileName().toString(), data);
+        }
+    }
+
+    private static RomImage readResource(String name) throws IOException
+    {
+        try(InputStream inputStream = RomLibrary.class.getClassLoader().getResourceAsStream(name))
+        {
+            if(inputStream == null)
+            {
+                throw new NoSuchFileException(name, null, "ROM not found as a file or on the classpath");
+            }
+            return new RomImage(name, ByteBuffer.wrap(inputStream.readAllBytes()));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.arjun.chip8;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded lock-free ring of 8 bit audio samples for exactly one producer thread and one consumer thread.
+// Works like KeyEventQueue but moves blocks of samples with arraycopy, and the producer only ever adds
+// a whole block so a frame of sound is never cut in half.
+public final class SampleRing {
+    private final byte[] samples;
+    private final int mask;
+    private final AtomicLong head; // Next sample to take, only written by the consumer
+    private final AtomicLong tail; // Next free slot, only written by the producer
+
+    public SampleRing(int capacity)
+    {
+        if(Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.samples = new byte[capacity];
+        this.mask = capacity - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+    }
+
+    public int capacity()
+    {
+        return this.samples.length;
+    }
+
+    // Called from the producer thread only, adds all length samples or none of them and returns false when they do not fit
+    public boolean offer(byte[] source, int offset, int length)
+    {
+        long tail = this.tail.getPlain();
+        if(tail + length - this.head.getAcquire() > this.samples.length)
+        {
+            return false;
+        }
+        int start = (int) tail & this.mask;
+        int first = Math.min(length, this.samples.length - start); // Up to the end of the array, the rest wraps to the front
+        System.arraycopy(source, offset, this.samples, start, first);
+        System.arraycopy(source, offset + first, this.samples, 0, length - first);
+        this.tail.setRelease(tail + length); // Publishes the samples written above
+        return true;
+    }
+
+    // Called from the consumer thread only, takes up to length samples and returns how many it took
+    public int poll(byte[] target, int offset, int length)
+    {
+        long head = this.head.getPlain();
+        int count = (int) Math.min(length, this.tail.getAcquire() - head);
+        int start = (int) head & this.mask;
+        int first = Math.min(count, this.samples.length - start);
+        System.arraycopy(this.samples, start, target, offset, first);
+        System.arraycopy(this.samples, 0, target, offset + first, count - first);
+        this.head.setRelease(head + count); // Hands the slots back to the producer
+        return count;
+    }
+
+    public int size()
+    {
+        return (int) (this.tail.getAcquire() - this.head.getAcquire());
+    }
+}
@@ -0,0 +1,129 @@
+package com.arjun.chip8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+// Runs the CPU in 60 Hz frames, executing a fixed number of instructions per frame and ticking the timers between frames
+public class Scheduler {
+    public static final int FRAME_RATE = 60;
+    public static final long FRAME_NANOS = 1_000_000_000L / FRAME_RATE;
+
+    private static final long SPIN_NANOS = 1_000_000L; // The last stretch before a deadline is spun, parking can oversleep by a millisecond or more
+    private static final int MAX_FRAMES_BEHIND = 5; // Past this the pacer stops trying to catch up
+    private static final long IDLE_NANOS = 100_000_000L; // Longest a frame blocks on input while the CPU waits for a key, so stop is noticed
+
+    private final CPU cpu;
+    private final int instructionsPerFrame;
+    private final boolean throttled; // False runs frames back to back as fast as possible
+
+    private final List<FrameListener> listeners;
+
+    private volatile boolean running;
+    private long frames;
+
+    public Scheduler(CPU cpu, int instructionsPerFrame, boolean throttled)
+    {
+        if(instructionsPerFrame <= 0)
+        {
+            throw new IllegalArgumentException("Instructions per frame must be positive: " + instructionsPerFrame);
+        }
+        this.cpu = cpu;
+        this.instructionsPerFrame = instructionsPerFrame;
+        this.throttled = throttled;
+        this.listeners = new ArrayList<>();
+    }
+
+    public void addFrameListener(FrameListener listener)
+    {
+        this.listeners.add(listener);
+    }
+
+    // Executes one frame worth of instructions, ticks the timers and presents what was drawn
+    public void runFrame()
+    {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        this.cpu.startFrame();
+        this.cpu.run(this.instructionsPerFrame);
+        this.cpu.tickTimers();
+        this.cpu.presentFrame();
+        if(Metrics.ENABLED)
+        {
+            this.cpu.getMetrics().frameEnded(this.cpu.getCycles(), System.nanoTime() - start);
+        }
+        this.frames++;
+        for(int i = 0; i < this.listeners.size(); i++)
+        {
+            this.listeners.get(i).frameEnded(this.cpu, this.frames);
+        }
+    }
+
+    // Runs the given number of frames, paced to wall clock time when throttled
+    public void runFrames(long count)
+    {
+        this.running = true;
+        long deadline = System.nanoTime();
+        for(long i = 0; i < count && this.running && !this.cpu.hasExited(); i++)
+        {
+            this.runFrame();
+            if(this.cpu.isIdle() && this.cpu.getInput().awaitKey(IDLE_NANOS))
+            {
+                deadline = System.nanoTime(); // Slept until a key came, the frames in between would not have changed anything
+            }
+            else if(this.throttled)
+            {
+                deadline = pace(deadline + FRAME_NANOS);
+            }
+        }
+        this.running = false;
+    }
+
+    // Runs frames until stop is called
+    public void run()
+    {
+        this.runFrames(Long.MAX_VALUE);
+    }
+
+    public void stop()
+    {
+        this.running = false;
+    }
+
+    public long getFrames()
+    {
+        return this.frames;
+    }
+
+    public CPU getCPU()
+    {
+        return this.cpu;
+    }
+
+    public int getInstructionsPerFrame()
+    {
+        return this.instructionsPerFrame;
+    }
+
+    // Waits until the deadline and returns the deadline the next frame should be measured from
+    private static long pace(long deadline)
+    {
+        long now = System.nanoTime();
+        if(now - deadline > MAX_FRAMES_BEHIND * FRAME_NANOS)
+        {
+            return now; // Fell too far behind (debugger, suspended machine), start pacing again from now instead of bursting
+        }
+        long remaining;
+        while((remaining = deadline - System.nanoTime()) > 0)
+        {
+            if(remaining > SPIN_NANOS)
+            {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            }
+            else
+            {
+                Thread.onSpinWait();
+            }
+        }
+        return deadline;
+    }
+}
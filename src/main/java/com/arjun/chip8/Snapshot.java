@@ -0,0 +1,215 @@
+package com.arjun.chip8;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// The full state of a machine at one point in time, taken with CPU.snapshot and put back with CPU.restore.
+// Memory is kept as pages shared with the snapshot taken before it, so a snapshot only copies the pages written since.
+public final class Snapshot {
+    public static final int PAGE_SIZE = 256;
+
+    private static final int MAGIC = 0x4338534E; // "C8SN"
+    private static final int VERSION = 3; // Only this version is read, earlier ones were never released
+
+    final byte[][] pages; // Never written after the snapshot is made, so they can be shared
+    final int[] registers;
+    final int[] stack;
+    final int I;
+    final int pc;
+    final int sp;
+    final int delayTimer;
+    final int soundTimer;
+    final long cycles;
+    final boolean waitingForKey;
+    final long randomState;
+    final int displayRows;
+    final int displayCols;
+    final long[] display;
+    final Variant variant;
+    final int displayPlanes;
+    final boolean hires;
+    final int planeMask;
+    final int[] flags;
+    final byte[] audioPattern; // Null when the ROM never loaded one
+    final int pitch;
+    final boolean exited;
+
+    Snapshot(byte[][] pages, int[] registers, int[] stack, int I, int pc, int sp, int delayTimer, int soundTimer,
+             long cycles, boolean waitingForKey, long randomState, int displayRows, int displayCols, long[] display,
+             Variant variant, int displayPlanes, boolean hires, int planeMask, int[] flags, byte[] audioPattern, int pitch, boolean exited)
+    {
+        this.pages = pages;
+        this.registers = registers;
+        this.stack = stack;
+        this.I = I;
+        this.pc = pc;
+        this.sp = sp;
+        this.delayTimer = delayTimer;
+        this.soundTimer = soundTimer;
+        this.cycles = cycles;
+        this.waitingForKey = waitingForKey;
+        this.randomState = randomState;
+        this.displayRows = displayRows;
+        this.displayCols = displayCols;
+        this.display = display;
+        this.variant = variant;
+        this.displayPlanes = displayPlanes;
+        this.hires = hires;
+        this.planeMask = planeMask;
+        this.flags = flags;
+        this.audioPattern = audioPattern;
+        this.pitch = pitch;
+        this.exited = exited;
+    }
+
+    public Variant getVariant()
+    {
+        return this.variant;
+    }
+
+    public long getCycles()
+    {
+        return this.cycles;
+    }
+
+    public int getPc()
+    {
+        return this.pc;
+    }
+
+    // Counts the pages this snapshot shares with another one instead of owning a copy
+    public int sharedPages(Snapshot other)
+    {
+        int shared = 0;
+        for(int i = 0; i < Math.min(this.pages.length, other.pages.length); i++)
+        {
+            if(this.pages[i] == other.pages[i])
+            {
+                shared++;
+            }
+        }
+        return shared;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShort(this.pages.length);
+        for(byte[] page : this.pages)
+        {
+            out.write(page);
+        }
+        for(int register : this.registers)
+        {
+            out.writeByte(register);
+        }
+        out.writeByte(this.stack.length);
+        for(int address : this.stack)
+        {
+            out.writeShort(address);
+        }
+        out.writeShort(this.I);
+        out.writeShort(this.pc);
+        out.writeByte(this.sp);
+        out.writeByte(this.delayTimer);
+        out.writeByte(this.soundTimer);
+        out.writeLong(this.cycles);
+        out.writeBoolean(this.waitingForKey);
+        out.writeLong(this.randomState);
+        out.writeByte(this.displayRows);
+        out.writeShort(this.displayCols);
+        out.writeByte(this.displayPlanes);
+        for(long word : this.display)
+        {
+            out.writeLong(word);
+        }
+        out.writeByte(this.variant.ordinal());
+        out.writeBoolean(this.hires);
+        out.writeByte(this.planeMask);
+        for(int flag : this.flags)
+        {
+            out.writeByte(flag);
+        }
+        out.writeBoolean(this.audioPattern != null);
+        if(this.audioPattern != null)
+        {
+            out.write(this.audioPattern);
+        }
+        out.writeByte(this.pitch);
+        out.writeBoolean(this.exited);
+        out.flush();
+    }
+
+    public static Snapshot readFrom(InputStream inputStream) throws IOException
+    {
+        DataInputStream in = new DataInputStream(inputStream);
+        if(in.readInt() != MAGIC)
+        {
+            throw new IOException("Not a chip 8 snapshot");
+        }
+        int version = in.readUnsignedByte();
+        if(version != VERSION)
+        {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        byte[][] pages = new byte[in.readUnsignedShort()][];
+        for(int i = 0; i < pages.length; i++)
+        {
+            pages[i] = new byte[PAGE_SIZE];
+            in.readFully(pages[i]);
+        }
+        int[] registers = new int[16];
+        for(int i = 0; i < registers.length; i++)
+        {
+            registers[i] = in.readUnsignedByte();
+        }
+        int[] stack = new int[in.readUnsignedByte()];
+        for(int i = 0; i < stack.length; i++)
+        {
+            stack[i] = in.readUnsignedShort();
+        }
+        int I = in.readUnsignedShort();
+        int pc = in.readUnsignedShort();
+        int sp = in.readUnsignedByte();
+        int delayTimer = in.readUnsignedByte();
+        int soundTimer = in.readUnsignedByte();
+        long cycles = in.readLong();
+        boolean waitingForKey = in.readBoolean();
+        long randomState = in.readLong();
+        int displayRows = in.readUnsignedByte();
+        int displayCols = in.readUnsignedShort();
+        int displayPlanes = in.readUnsignedByte();
+        long[] display = new long[displayPlanes * displayRows * displayCols / 64];
+        for(int i = 0; i < display.length; i++)
+        {
+            display[i] = in.readLong();
+        }
+        int variant = in.readUnsignedByte();
+        if(variant >= Variant.values().length)
+        {
+            throw new IOException("Unknown variant " + variant);
+        }
+        boolean hires = in.readBoolean();
+        int planeMask = in.readUnsignedByte();
+        int[] flags = new int[16];
+        for(int i = 0; i < flags.length; i++)
+        {
+            flags[i] = in.readUnsignedByte();
+        }
+        byte[] audioPattern = null;
+        if(in.readBoolean())
+        {
+            audioPattern = new byte[16];
+            in.readFully(audioPattern);
+        }
+        int pitch = in.readUnsignedByte();
+        boolean exited = in.readBoolean();
+        return new Snapshot(pages, registers, stack, I, pc, sp, delayTimer, soundTimer, cycles, waitingForKey, randomState, displayRows, displayCols, display,
+                Variant.values()[variant], displayPlanes, hires, planeMask, flags, audioPattern, pitch, exited);
+    }
+}
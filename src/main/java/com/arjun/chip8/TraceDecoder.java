@@ -0,0 +1,62 @@
+package com.arjun.chip8;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Turns a binary trace written by Tracer back into readable opcode lines
+public final class TraceDecoder {
+
+    private TraceDecoder()
+    {
+    }
+
+    public static void decode(InputStream inputStream, PrintStream out) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if(in.readInt() != Tracer.MAGIC)
+        {
+            throw new IOException("Not a chip 8 trace file");
+        }
+        int version = in.readUnsignedByte();
+        if(version != Tracer.VERSION)
+        {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        int variant = in.readUnsignedByte();
+        if(variant >= Variant.values().length)
+        {
+            throw new IOException("Unknown variant " + variant);
+        }
+        byte[] table = Decoder.table(Variant.values()[variant]);
+        long count = in.readLong();
+        int kept = in.readInt();
+        out.printf("Trace of %d %s instructions, showing the last %d%n", count, Variant.values()[variant], kept);
+        for(int i = 0; i < kept; i++)
+        {
+            int record = in.readInt();
+            int address = record >>> 16;
+            int opcode = record & 0xFFFF;
+            out.printf("%03X Opcode: %04X%n", address, opcode);
+            out.printf("%03X Instruction: %s%n", address, Decoder.NAMES[table[opcode]]);
+        }
+        out.flush();
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length != 1)
+        {
+            System.err.println("Usage: TraceDecoder <trace file>");
+            System.exit(1);
+        }
+        try(InputStream in = Files.newInputStream(Path.of(args[0])))
+        {
+            decode(in, System.out);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.arjun.chip8;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Records executed opcodes into a preallocated ring buffer, decoded later by TraceDecoder
+public final class Tracer {
+    // Read once at startup so the JIT drops every trace call when tracing is off
+    public static final boolean ENABLED = Boolean.getBoolean("chip8.trace");
+
+    static final int MAGIC = 0x43385452; // "C8TR"
+    static final int VERSION = 2; // Version 1 did not record the variant and is not read
+
+    private final int[] records; // Each record is the address in the high 16 bits and the opcode in the low 16 bits
+    private final int mask;
+    private final Variant variant; // Opcodes decode differently on each variant
+    private long count; // Total records written, the ring keeps the newest records.length of them
+
+    public Tracer(int capacity, Variant variant)
+    {
+        if(Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("Trace capacity must be a power of two: " + capacity);
+        }
+        this.records = new int[capacity];
+        this.mask = capacity - 1;
+        this.variant = variant;
+    }
+
+    // Records an opcode executed at the address
+    public void record(int address, int opcode)
+    {
+        this.records[(int) (this.count++ & this.mask)] = (address << 16) | (opcode & 0xFFFF);
+    }
+
+    public long getCount()
+    {
+        return this.count;
+    }
+
+    // Writes the records still in the ring, oldest first
+    public void writeTo(OutputStream outputStream) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        int kept = (int) Math.min(this.count, this.records.length);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(this.variant.ordinal());
+        out.writeLong(this.count);
+        out.writeInt(kept);
+        for(long i = this.count - kept; i < this.count; i++)
+        {
+            out.writeInt(this.records[(int) (i & this.mask)]);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,52 @@
+package com.arjun.chip8;
+
+// The machines the CPU can behave as. SUPER-CHIP adds a 128x64 hi-res mode, scrolling, 16x16 sprites, a large font
+// and RPL flags. XO-CHIP adds 64K of memory, a second bitplane and an audio pattern buffer on top of those.
+// Quirks follow Octo's compatibility profiles, so ROMs written for it run unchanged.
+public enum Variant {
+    CHIP8(4096, 32, 64, 1, false, false, false),
+    SCHIP(4096, 64, 128, 1, true, true, false),
+    XOCHIP(65536, 64, 128, 2, false, false, true);
+
+    final int memorySize;
+    final int displayRows; // Lo-res pixels are drawn 2x2 on the hi-res display when it is 128x64
+    final int displayCols;
+    final int planes;
+    final boolean clipping; // Sprites are cut off at the edges instead of wrapping around
+    final boolean jumpUsesVx; // Bxnn jumps to xnn + Vx instead of Bnnn to nnn + V0
+    final boolean incrementsI; // Fx55 and Fx65 leave I after the last register, 5xy2 and 5xy3 never do
+
+    Variant(int memorySize, int displayRows, int displayCols, int planes, boolean clipping, boolean jumpUsesVx, boolean incrementsI)
+    {
+        this.memorySize = memorySize;
+        this.displayRows = displayRows;
+        this.displayCols = displayCols;
+        this.planes = planes;
+        this.clipping = clipping;
+        this.jumpUsesVx = jumpUsesVx;
+        this.incrementsI = incrementsI;
+    }
+
+    public int getMemorySize()
+    {
+        return this.memorySize;
+    }
+
+    // A display of the right size for this machine
+    public Display newDisplay()
+    {
+        return new Display(this.displayRows, this.displayCols, this.planes, this.clipping);
+    }
+
+    // Looks a variant up by a name such as "chip8", "schip" or "xochip"
+    public static Variant named(String name)
+    {
+        switch(name.toLowerCase())
+        {
+            case "chip8": return CHIP8;
+            case "schip": return SCHIP;
+            case "xochip": return XOCHIP;
+            default: throw new IllegalArgumentException("Unknown variant: " + name);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.arjun.chip8;
+
+// Receives the display once per frame when the CPU has drawn to it
+public interface VideoSink {
+    void refresh(Display display, long dirtyRows); // Bit n of dirtyRows is set when row n changed
+}
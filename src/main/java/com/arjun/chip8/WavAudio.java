@@ -0,0 +1,65 @@
+package com.arjun.chip8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Writes samples to a WAV file, for headless runs and for checking what a ROM sounds like
+public class WavAudio implements AudioSink {
+    private static final int HEADER_SIZE = 44;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer; // Reused for converting samples, WAV stores 8 bit audio unsigned
+    private long dataSize;
+
+    public WavAudio(Path path) throws IOException
+    {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocate(Audio.SAMPLES_PER_FRAME * 4);
+        this.writeHeader(); // Sizes are filled in on close
+    }
+
+    @Override
+    public void write(byte[] samples, int offset, int length) throws IOException
+    {
+        while(length > 0)
+        {
+            int count = Math.min(length, this.buffer.capacity());
+            this.buffer.clear();
+            for(int i = 0; i < count; i++)
+            {
+                this.buffer.put((byte) (samples[offset + i] ^ 0x80)); // Signed to unsigned
+            }
+            this.buffer.flip();
+            while(this.buffer.hasRemaining())
+            {
+                this.channel.write(this.buffer);
+            }
+            this.dataSize += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.writeHeader();
+        this.channel.close();
+    }
+
+    private void writeHeader() throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952).putInt((int) (HEADER_SIZE - 8 + this.dataSize)).putInt(0x45564157); // "RIFF", size, "WAVE"
+        header.putInt(0x20746D66).putInt(16).putShort((short) 1).putShort((short) 1); // "fmt ", PCM, mono
+        header.putInt(Audio.SAMPLE_RATE).putInt(Audio.SAMPLE_RATE).putShort((short) 1).putShort((short) 8); // Byte rate, block align, bits
+        header.putInt(0x61746164).putInt((int) this.dataSize); // "data", size
+        header.flip();
+        this.channel.write(header, 0);
+        this.channel.position(Math.max(this.channel.position(), HEADER_SIZE));
+    }
+}
@@ -4,22 +4,42 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class Window extends JPanel{
+public class Window extends JPanel implements VideoSink {
+
+    private static final int ON = 0xFFFFFF; // White
+    private static final int OFF = 0x000000; // Black
+    private static final int[] PALETTE = {OFF, ON, 0xAAAAAA, 0x555555}; // XO-CHIP colours, indexed by plane 0 bit | plane 1 bit << 1
 
     private int width = 600;
     private int height = 600;
 
     private final Display display;
 
-    public Window(Display display, Keyboard keyboard)
+    private final BufferedImage image; // One image pixel per display pixel, scaled to the window when painted
+    private final int[] rowPixels; // Reused buffer for converting one display row
+    private final AtomicBoolean repaintPending; // Set between asking Swing to repaint and the repaint running
+    private volatile long repaintRequested; // When the pending repaint was asked for, only kept when metrics are enabled
+
+    // Creates the panel without a frame, for drawing offscreen
+    public Window(Display display)
     {
         this.display = display;
+        this.image = new BufferedImage(display.getCols(), display.getRows(), BufferedImage.TYPE_INT_RGB);
+        this.rowPixels = new int[display.getCols()];
+        this.repaintPending = new AtomicBoolean();
+        this.setBackground(Color.BLACK);
+    }
+
+    public Window(Display display, Keyboard keyboard)
+    {
+        this(display);
 
         JFrame frame = new JFrame("Chip 8 Emulator");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.add(this);
-        this.setBackground(Color.BLACK);
         frame.setSize(width, height);
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
@@ -50,25 +70,83 @@ public class Window extends JPanel{
         });
     }
 
+    // Copies the changed rows into the image, called on the emulation thread once per frame
+    @Override
+    public void refresh(Display display, long dirtyRows)
+    {
+        synchronized(this.image)
+        {
+            while(dirtyRows != 0)
+            {
+                int row = Long.numberOfTrailingZeros(dirtyRows);
+                dirtyRows &= dirtyRows - 1; // Clears the lowest dirty row
+                this.copyRow(row);
+            }
+        }
+        if(this.repaintPending.compareAndSet(false, true)) // Only one repaint is queued at a time however many frames arrive
+        {
+            if(Metrics.ENABLED)
+            {
+                this.repaintRequested = System.nanoTime();
+            }
+            this.repaint();
+        }
+    }
+
+    private void copyRow(int row)
+    {
+        int cols = this.display.getCols();
+        if(this.display.getPlanes() > 1)
+        {
+            this.copyPlanes(row);
+            return;
+        }
+        for(int word = 0; word < cols / 64; word++)
+        {
+            long pixels = this.display.getWord(row, word);
+            for(int bit = 0; bit < 64; bit++)
+            {
+                this.rowPixels[word * 64 + bit] = (pixels << bit) < 0 ? ON : OFF; // Tests the bit by moving it into the sign bit
+            }
+        }
+        this.image.setRGB(0, row, cols, 1, this.rowPixels, 0, cols);
+    }
+
+    // Combines the bits of every plane into a palette index per pixel
+    private void copyPlanes(int row)
+    {
+        int cols = this.display.getCols();
+        for(int word = 0; word < cols / 64; word++)
+        {
+            long plane0 = this.display.getWord(0, row, word);
+            long plane1 = this.display.getWord(1, row, word);
+            for(int bit = 0; bit < 64; bit++)
+            {
+                this.rowPixels[word * 64 + bit] = PALETTE[(int) ((plane0 << bit) >>> 63 | (plane1 << bit) >>> 63 << 1)];
+            }
+        }
+        this.image.setRGB(0, row, cols, 1, this.rowPixels, 0, cols);
+    }
+
     // Paints the graphics onto the screen
     @Override
     public void paint(Graphics g) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        if(Metrics.ENABLED && this.repaintPending.get())
+        {
+            Metrics.REPAINT_LATENCY.record(start - this.repaintRequested);
+        }
+        this.repaintPending.set(false);
         super.paint(g);
-         int colWidth = width/Display.COLS;
-         int rowHeight = height/Display.ROWS;
-
-         g.setColor(Color.WHITE);
-         for(int row = 0; row < Display.ROWS; row++) {
-             for(int col = 0; col < Display.COLS; col++) {
-                 int pixel = this.display.getPixel(row, col);
-                 if(pixel == 1)
-                 {
-                     int x = col * colWidth;
-                     int y = row * rowHeight;
-                     g.fillRect(x, y, colWidth, rowHeight);
-                 }
-             }
-         }
+        synchronized(this.image)
+        {
+            g.drawImage(this.image, 0, 0, width, height, null); // Scales the whole display in one call
+        }
+        Toolkit.getDefaultToolkit().sync(); // Flushes the drawing so frames are not batched up by the window system
+        if(Metrics.ENABLED)
+        {
+            Metrics.PAINT_TIME.record(System.nanoTime() - start);
+        }
     }
 
 }
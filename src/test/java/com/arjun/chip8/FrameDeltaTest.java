@@ -0,0 +1,105 @@
+package com.arjun.chip8;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameDeltaTest {
+
+    @Test
+    void unchangedPictureIsOnlyTheRowMask()
+    {
+        long[] picture = filled(Display.ROWS, 0x0123456789ABCDEFL);
+        ByteBuffer out = ByteBuffer.allocate(FrameDelta.maxSize(picture.length));
+        assertEquals(0, FrameDelta.encode(picture, picture.clone(), 1, out));
+        assertEquals(8, out.position());
+        roundTrip(picture, picture.clone(), 1);
+    }
+
+    @Test
+    void blankToAllSet()
+    {
+        roundTrip(new long[Display.ROWS], filled(Display.ROWS, -1L), 1);
+        roundTrip(filled(Display.ROWS, -1L), new long[Display.ROWS], 1);
+    }
+
+    // Changed and unchanged bytes taking turns is the largest encoding there is
+    @Test
+    void alternatingBytesFitTheWorstCase()
+    {
+        roundTrip(new long[Display.ROWS], filled(Display.ROWS, 0xFF00FF00FF00FF00L), 1);
+        roundTrip(new long[Display.ROWS], filled(Display.ROWS, 0x00FF00FF00FF00FFL), 1);
+        roundTrip(new long[64 * 2], filled(64 * 2, 0xFF00FF00FF00FF00L), 2); // Hi-res, two words a row
+    }
+
+    @Test
+    void longRunsSplitAtTheControlByteLimit()
+    {
+        long[] current = new long[Display.ROWS];
+        current[0] = 1; // A zero run of 7 bytes, then literals and zeros that cross rows
+        Arrays.fill(current, 1, 20, -1L);
+        current[31] = 1L << 63;
+        roundTrip(new long[Display.ROWS], current, 1);
+    }
+
+    @Test
+    void randomPicturesWithSparseBytes()
+    {
+        Random random = new Random(1);
+        for(int i = 0; i < 2000; i++)
+        {
+            int wordsPerRow = 1 + random.nextInt(2);
+            long[] previous = sparse(random, Display.ROWS * wordsPerRow);
+            long[] current = random.nextBoolean() ? sparse(random, previous.length) : previous.clone();
+            if(random.nextBoolean())
+            {
+                current[random.nextInt(current.length)] ^= 1L << random.nextInt(64);
+            }
+            roundTrip(previous, current, wordsPerRow);
+        }
+    }
+
+    // Encodes into a buffer of exactly maxSize and checks applying it to previous gives current back
+    private static void roundTrip(long[] previous, long[] current, int wordsPerRow)
+    {
+        ByteBuffer out = ByteBuffer.allocate(FrameDelta.maxSize(current.length));
+        long rowMask = FrameDelta.encode(previous, current, wordsPerRow, out);
+        assertTrue(out.position() <= FrameDelta.maxSize(current.length));
+        out.flip();
+        long[] pixels = previous.clone();
+        assertEquals(rowMask, FrameDelta.apply(out, pixels, wordsPerRow));
+        assertArrayEquals(current, pixels);
+        assertFalse(out.hasRemaining());
+    }
+
+    private static long[] filled(int words, long value)
+    {
+        long[] pixels = new long[words];
+        Arrays.fill(pixels, value);
+        return pixels;
+    }
+
+    // Words whose bytes are each zero or not with even odds, so zero runs and literals both show up
+    private static long[] sparse(Random random, int words)
+    {
+        long[] pixels = new long[words];
+        for(int word = 0; word < words; word++)
+        {
+            for(int b = 0; b < 8; b++)
+            {
+                if(random.nextBoolean())
+                {
+                    pixels[word] |= (long) (1 + random.nextInt(255)) << (8 * b);
+                }
+            }
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,134 @@
+package com.arjun.chip8;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Runs the bytecode JitEngine generates next to CPU.execute on the same random state, so the two cannot drift apart
+class JitEngineTest {
+    // Every operation emit has its own case for, then ones it hands back to execute
+    private static final int[] TEMPLATES = {
+            0x0123, 0x6000, 0x7000, 0x8000, 0x8001, 0x8002, 0x8003, 0x8004, 0x8005, 0x8006, 0x8007, 0x800E,
+            0xA000, 0xF01E, 0xF029, 0xF007, 0xF015,
+            0xC000, 0xF065
+    };
+
+    @Test
+    void eachOperationMatchesExecute()
+    {
+        Random random = new Random(1);
+        for(int template : TEMPLATES)
+        {
+            for(int i = 0; i < 500; i++)
+            {
+                check(random, new int[] {instruction(random, template)});
+            }
+        }
+    }
+
+    @Test
+    void randomBlocksMatchExecute()
+    {
+        Random random = new Random(2);
+        for(int i = 0; i < 5000; i++)
+        {
+            int[] ops = new int[1 + random.nextInt(20)];
+            for(int j = 0; j < ops.length; j++)
+            {
+                ops[j] = instruction(random, TEMPLATES[random.nextInt(TEMPLATES.length)]);
+            }
+            check(random, ops);
+        }
+    }
+
+    // Fills in the registers and operands a template leaves as zero, VF turns up often since it is the flag register
+    private static int instruction(Random random, int template)
+    {
+        int x = random.nextInt(4) == 0 ? 0xF : random.nextInt(16);
+        int y = random.nextInt(4) == 0 ? 0xF : random.nextInt(16);
+        int opcode;
+        switch(template >>> 12)
+        {
+            case 0x0: opcode = template; break;
+            case 0x8: opcode = template | x << 8 | y << 4; break;
+            case 0xA: opcode = template | random.nextInt(0x1000); break;
+            case 0xF: opcode = template | x << 8; break;
+            default: opcode = template | x << 8 | random.nextInt(0x100); break; // 6xnn, 7xnn and Cxnn
+        }
+        return Decoder.decode(opcode) << 16 | opcode;
+    }
+
+    private static void check(Random random, int[] ops)
+    {
+        CPU expected = CPU.headless(0);
+        CPU actual = CPU.headless(0);
+        expected.setSeed(ops.length);
+        actual.setSeed(ops.length);
+        for(int r = 0; r < 16; r++)
+        {
+            int value = random.nextInt(256);
+            expected.registers[r] = value;
+            actual.registers[r] = value;
+        }
+        int I = random.nextInt(0x1000 - 16); // Leaves room for Fx65 to read 16 bytes
+        expected.I = I;
+        actual.I = I;
+        int delay = random.nextInt(256);
+        expected.delayTimer = delay;
+        actual.delayTimer = delay;
+
+        String block = describe(ops);
+        Class<?> expectedFailure = null; // An earlier Fx1E can move I past the end of memory before Fx65 reads it
+        try
+        {
+            for(int op : ops)
+            {
+                expected.execute(op >>> 16, op & 0xFFFF);
+            }
+        }
+        catch(RuntimeException e)
+        {
+            expectedFailure = e.getClass();
+        }
+        Class<?> actualFailure = null;
+        try
+        {
+            compile(ops).run(actual);
+        }
+        catch(RuntimeException e)
+        {
+            actualFailure = e.getClass();
+        }
+        assertEquals(expectedFailure, actualFailure, block + " failure");
+        assertArrayEquals(expected.registers, actual.registers, block);
+        assertEquals(expected.I, actual.I, block + " I");
+        assertEquals(expected.delayTimer, actual.delayTimer, block + " delay timer");
+    }
+
+    private static CompiledBlock compile(int[] ops)
+    {
+        byte[] bytes = JitEngine.generate(new BlockEngine.Block(RomImage.LOAD_ADDRESS, ops, true));
+        try
+        {
+            return (CompiledBlock) MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass().getDeclaredConstructor().newInstance();
+        }
+        catch(ReflectiveOperationException e)
+        {
+            throw new AssertionError("Generated class for " + describe(ops) + " does not load", e);
+        }
+    }
+
+    private static String describe(int[] ops)
+    {
+        StringBuilder text = new StringBuilder();
+        for(int op : ops)
+        {
+            text.append(String.format("%04X ", op & 0xFFFF));
+        }
+        return text.toString().trim();
+    }
+}
@@ -0,0 +1,97 @@
+package com.arjun.chip8;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceDecoderTest {
+
+    @Test
+    void xoChipOpcodesDecodeWithTheirVariant() throws IOException
+    {
+        int[] opcodes = {0x00FF, 0x00C4, 0xF000, 0xF375, 0xF002, 0x00E0};
+        String[] names = {"00FF", "00Cn", "F000", "Fx75", "F002", "00E0"};
+        String[] lines = decode(trace(Variant.XOCHIP, opcodes));
+        assertEquals("Trace of 6 XOCHIP instructions, showing the last 6", lines[0]);
+        for(int i = 0; i < opcodes.length; i++)
+        {
+            int address = 0x200 + 2 * i;
+            assertEquals(String.format("%03X Opcode: %04X", address, opcodes[i]), lines[1 + 2 * i]);
+            assertEquals(String.format("%03X Instruction: %s", address, names[i]), lines[2 + 2 * i]);
+        }
+    }
+
+    @Test
+    void chip8TreatsSuperChipOpcodesAsMachineCalls() throws IOException
+    {
+        String[] lines = decode(trace(Variant.CHIP8, new int[] {0x00FF}));
+        assertEquals("200 Instruction: 0nnn", lines[2]);
+    }
+
+    // Only the newest records are kept once the ring wraps around
+    @Test
+    void keepsTheNewestRecords() throws IOException
+    {
+        int[] opcodes = {0x6001, 0x6002, 0x6003, 0x00FE, 0x00FF};
+        Tracer tracer = new Tracer(4, Variant.SCHIP);
+        for(int i = 0; i < opcodes.length; i++)
+        {
+            tracer.record(0x200 + 2 * i, opcodes[i]);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tracer.writeTo(out);
+        String[] lines = decode(out.toByteArray());
+        assertEquals("Trace of 5 SCHIP instructions, showing the last 4", lines[0]);
+        assertEquals("202 Opcode: 6002", lines[1]);
+        assertEquals("208 Instruction: 00FF", lines[8]);
+    }
+
+    // A version 1 trace had the instruction count straight after the magic number
+    @Test
+    void rejectsTracesWithoutAVariant() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Tracer.MAGIC);
+        out.writeLong(1);
+        out.writeInt(1);
+        out.writeInt(0x200 << 16 | 0x00E0);
+        try
+        {
+            decode(bytes.toByteArray());
+        }
+        catch(IOException e)
+        {
+            assertTrue(e.getMessage().startsWith("Unsupported trace version"), e.getMessage());
+            return;
+        }
+        throw new AssertionError("A version 1 trace was decoded");
+    }
+
+    private static byte[] trace(Variant variant, int[] opcodes) throws IOException
+    {
+        Tracer tracer = new Tracer(16, variant);
+        for(int i = 0; i < opcodes.length; i++)
+        {
+            tracer.record(0x200 + 2 * i, opcodes[i]);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tracer.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static String[] decode(byte[] trace) throws IOException
+    {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        TraceDecoder.decode(new ByteArrayInputStream(trace), new PrintStream(text, true, StandardCharsets.UTF_8));
+        return text.toString(StandardCharsets.UTF_8).split("\\R");
+    }
+}